@@ -0,0 +1,104 @@
+package edu.cnm.deepdive.nasaapod.model.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import androidx.room.Room;
+import androidx.room.paging.LimitOffsetDataSource;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * The full-text index follows inserts, updates and deletes on Apod through its sync triggers, and
+ * {@link ApodDao#search(String)} ranks title matches first, then by number of matches.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ApodFtsTest {
+
+  private static final long FIRST_DAY = 18_000;
+
+  private ApodDatabase database;
+  private SupportSQLiteDatabase db;
+
+  @Before
+  public void setUp() {
+    Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    database = Room.inMemoryDatabaseBuilder(context, ApodDatabase.class).build();
+    db = database.getOpenHelper().getWritableDatabase();
+  }
+
+  @After
+  public void tearDown() {
+    database.close();
+  }
+
+  @Test
+  public void triggersFollowChanges() {
+    insert(1, "Horsehead Nebula", "Dark dust against glowing hydrogen.");
+    assertEquals(1, countMatches("horsehead"));
+    assertEquals(1, countMatches("hydrogen"));
+
+    db.execSQL("UPDATE Apod SET title = 'Flame Nebula' WHERE apod_id = 1");
+    assertEquals(0, countMatches("horsehead"));
+    assertEquals(1, countMatches("flame"));
+    assertEquals(1, countMatches("hydrogen"));
+
+    db.execSQL("DELETE FROM Apod WHERE apod_id = 1");
+    assertEquals(0, countMatches("flame"));
+    assertEquals(0, countMatches("hydrogen"));
+  }
+
+  @Test
+  public void searchRanking() {
+    insert(1, "Orion Rising", "Comet over the hills.");
+    insert(2, "Sky Over Chile", "A comet, and a comet's tail, and another comet.");
+    insert(3, "Winter Sky", "A comet.");
+    insert(4, "Comet Lovejoy", "Green glow.");
+    insert(5, "Sky at Dawn", "A comet, a second comet.");
+    // Title match; then 3 matches, 2 matches; then 1 match each, newest first.
+    assertEquals(ids(4, 2, 5, 3, 1), search("comet*"));
+  }
+
+  private void insert(long id, String title, String description) {
+    db.execSQL("INSERT INTO Apod (apod_id, date, title, description, media_type, url) "
+            + "VALUES (?, ?, ?, ?, 0, ?)",
+        new Object[]{id, FIRST_DAY + id, title, description, "https://example.com/" + id});
+  }
+
+  private int countMatches(String query) {
+    try (Cursor cursor =
+        db.query("SELECT COUNT(*) FROM ApodFts WHERE ApodFts MATCH ?", new Object[]{query})) {
+      cursor.moveToFirst();
+      return cursor.getInt(0);
+    }
+  }
+
+  private List<Long> search(String query) {
+    LimitOffsetDataSource<ApodSummary> source =
+        (LimitOffsetDataSource<ApodSummary>) database.getApodDao().search(query).create();
+    List<Long> ids = new ArrayList<>();
+    for (ApodSummary summary : source.loadRange(0, Integer.MAX_VALUE)) {
+      ids.add(summary.getId());
+    }
+    return ids;
+  }
+
+  private static List<Long> ids(long... values) {
+    List<Long> ids = new ArrayList<>();
+    for (long value : values) {
+      ids.add(value);
+    }
+    return ids;
+  }
+
+}
@@ -0,0 +1,179 @@
+package edu.cnm.deepdive.nasaapod.model.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Heap retained and cursor windows filled when loading the history list, at 5,000 and 10,000
+ * rows: the whole list through the old full-row ({@code a.*}) query, the whole list through the
+ * summary projection, and one keyset page of summaries (what the paged list actually loads).
+ * Results are written to logcat under {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryQueryBenchmark {
+
+  private static final String TAG = "HistoryQueryBenchmark";
+  private static final String FULL_ROW_QUERY = "SELECT a.*, s.last_access AS lastAccess, "
+      + "s.access_count AS accessCount FROM Apod AS a "
+      + "LEFT JOIN AccessStats AS s ON s.apod_id = a.apod_id ORDER BY a.date DESC";
+  private static final String SUMMARY_QUERY = ApodDao.APOD_STATS_QUERY + "ORDER BY a.date DESC";
+  // About the length of a typical APoD explanation.
+  private static final int DESCRIPTION_LENGTH = 1500;
+  private static final int PAGE_SIZE = 30;
+  private static final long FIRST_DAY = 9_000;
+
+  private ApodDatabase database;
+
+  @Before
+  public void setUp() {
+    Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    database = Room.inMemoryDatabaseBuilder(context, ApodDatabase.class).build();
+  }
+
+  @After
+  public void tearDown() {
+    database.close();
+  }
+
+  @Test
+  public void history5000() {
+    benchmark(5_000);
+  }
+
+  @Test
+  public void history10000() {
+    benchmark(10_000);
+  }
+
+  private void benchmark(int rows) {
+    populate(rows);
+    SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
+    measure(rows, "full rows", () -> readAll(db, FULL_ROW_QUERY));
+    measure(rows, "summaries", () -> readAll(db, SUMMARY_QUERY));
+    long before = usedHeap();
+    long start = SystemClock.elapsedRealtimeNanos();
+    List<ApodSummary> page = database.getApodDao().selectWithStats(PAGE_SIZE);
+    long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+    long retained = usedHeap() - before;
+    assertEquals(PAGE_SIZE, page.size());
+    Log.i(TAG, String.format("%d rows, one page: %d rows, %d KB retained, %.1f ms",
+        rows, page.size(), retained / 1024, elapsed / 1e6));
+  }
+
+  private void measure(int rows, String label, Load load) {
+    long before = usedHeap();
+    long start = SystemClock.elapsedRealtimeNanos();
+    Result result = load.run();
+    long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+    long retained = usedHeap() - before;
+    assertEquals(rows, result.rows.size());
+    Log.i(TAG, String.format(
+        "%d rows, %s: %d KB retained, %d cursor window fills (%d rows per window), %.1f ms",
+        rows, label, retained / 1024, result.windowFills, rows / Math.max(1, result.windowFills),
+        elapsed / 1e6));
+  }
+
+  // Reads every column of every row into memory, as a list adapter holding the result would, and
+  // counts how many times the cursor had to refill its window to get there.
+  private Result readAll(SupportSQLiteDatabase db, String query) {
+    Result result = new Result();
+    try (Cursor cursor = db.query(query)) {
+      int lastStart = -1;
+      while (cursor.moveToNext()) {
+        CursorWindow window = ((AbstractWindowedCursor) cursor).getWindow();
+        if (window.getStartPosition() != lastStart) {
+          lastStart = window.getStartPosition();
+          result.windowFills++;
+        }
+        Object[] row = new Object[cursor.getColumnCount()];
+        for (int i = 0; i < row.length; i++) {
+          row[i] = (cursor.getType(i) == Cursor.FIELD_TYPE_STRING)
+              ? cursor.getString(i)
+              : (Long) cursor.getLong(i);
+        }
+        result.rows.add(row);
+      }
+    }
+    return result;
+  }
+
+  private void populate(int rows) {
+    SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+    Random random = new Random(rows);
+    StringBuilder text = new StringBuilder();
+    db.beginTransaction();
+    try {
+      SupportSQLiteStatement apod = db.compileStatement("INSERT INTO Apod "
+          + "(apod_id, date, title, description, copyright, media_type, url, hd_url) "
+          + "VALUES (?, ?, ?, ?, ?, 0, ?, ?)");
+      SupportSQLiteStatement stats = db.compileStatement(
+          "INSERT INTO AccessStats (apod_id, access_count, last_access) VALUES (?, ?, ?)");
+      for (int i = 1; i <= rows; i++) {
+        text.setLength(0);
+        while (text.length() < DESCRIPTION_LENGTH) {
+          text.append(Long.toString(random.nextLong(), 36)).append(' ');
+        }
+        apod.bindLong(1, i);
+        apod.bindLong(2, FIRST_DAY + i);
+        apod.bindString(3, "Title " + i);
+        apod.bindString(4, text.toString());
+        apod.bindString(5, "Copyright " + i);
+        apod.bindString(6, "https://apod.nasa.gov/apod/image/" + i + ".jpg");
+        apod.bindString(7, "https://apod.nasa.gov/apod/image/" + i + "-hd.jpg");
+        apod.executeInsert();
+        if (i % 3 == 0) {
+          stats.bindLong(1, i);
+          stats.bindLong(2, 1 + random.nextInt(20));
+          stats.bindLong(3, System.currentTimeMillis());
+          stats.executeInsert();
+        }
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      runtime.gc();
+      runtime.runFinalization();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private interface Load {
+
+    Result run();
+
+  }
+
+  private static class Result {
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private int windowFills;
+
+  }
+
+}
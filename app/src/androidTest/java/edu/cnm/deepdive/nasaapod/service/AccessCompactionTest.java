@@ -0,0 +1,151 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import edu.cnm.deepdive.nasaapod.model.dao.AccessDao;
+import edu.cnm.deepdive.nasaapod.model.entity.Access;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase.EpochDayConverters;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compacting old Access rows into AccessRollup leaves every APoD's view count and last access time
+ * exactly as they were, both in AccessStats and as the sum of the rollups and the rows left; each
+ * rollup holds the views of one local calendar day.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AccessCompactionTest {
+
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+  // Small enough that a day's rows are split across batches.
+  private static final int BATCH_SIZE = 4;
+  private static final long[] APODS = {1, 2};
+
+  private ApodDatabase database;
+  private SupportSQLiteDatabase db;
+  private AccessDao dao;
+
+  @Before
+  public void setUp() {
+    Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    database = Room.inMemoryDatabaseBuilder(context, ApodDatabase.class)
+        .addCallback(new StatsTriggerCallback())
+        .build();
+    db = database.getOpenHelper().getWritableDatabase();
+    dao = database.getAccessDao();
+    for (long id : APODS) {
+      db.execSQL("INSERT INTO Apod (apod_id, date, title, description, media_type, url) "
+          + "VALUES (?, ?, 'Title', 'Description', 0, 'https://example.com/')",
+          new Object[]{id, 18_000 + id});
+    }
+  }
+
+  @After
+  public void tearDown() {
+    database.close();
+  }
+
+  @Test
+  public void countsStayExact() {
+    long now = System.currentTimeMillis();
+    long cutoff = now - RETENTION_MILLIS;
+    List<Access> accesses = new ArrayList<>();
+    Map<String, Long> expectedRollups = new HashMap<>();
+    // Every 5 hours over 3 days before the cutoff, alternating APoDs, with 1 to 3 views each.
+    for (int i = 1; i <= 15; i++) {
+      long apodId = APODS[i % APODS.length];
+      long timestamp = cutoff - i * 5 * HOUR_MILLIS;
+      int views = 1 + i % 3;
+      accesses.add(access(apodId, timestamp, views));
+      String key = apodId + "/" + EpochDayConverters.fromDate(new Date(timestamp));
+      Long sum = expectedRollups.get(key);
+      expectedRollups.put(key, (sum != null ? sum : 0) + views);
+    }
+    for (long apodId : APODS) {
+      accesses.add(access(apodId, now - HOUR_MILLIS * apodId, 2));
+    }
+    dao.insert(accesses).blockingGet();
+    Map<Long, long[]> before = selectStats();
+
+    int batches = 0;
+    while (dao.compactBatch(cutoff, BATCH_SIZE)) {
+      batches++;
+    }
+
+    assertEquals(15 / BATCH_SIZE, batches);
+    assertEquals(0, queryLong("SELECT COUNT(*) FROM Access WHERE timestamp < " + cutoff));
+    assertEquals(APODS.length, queryLong("SELECT COUNT(*) FROM Access"));
+    Map<Long, long[]> after = selectStats();
+    for (long apodId : APODS) {
+      long[] stats = before.get(apodId);
+      assertEquals(stats[0], after.get(apodId)[0]);
+      assertEquals(stats[1], after.get(apodId)[1]);
+      assertEquals(stats[0], queryLong("SELECT "
+          + "(SELECT SUM(access_count) FROM AccessRollup WHERE apod_id = " + apodId + ") + "
+          + "(SELECT SUM(views) FROM Access WHERE apod_id = " + apodId + ")"));
+      assertEquals(stats[1], queryLong("SELECT MAX("
+          + "(SELECT MAX(last_access) FROM AccessRollup WHERE apod_id = " + apodId + "), "
+          + "(SELECT MAX(timestamp) FROM Access WHERE apod_id = " + apodId + "))"));
+    }
+    Map<String, Long> rollups = new HashMap<>();
+    try (Cursor cursor = db.query("SELECT apod_id, day, access_count FROM AccessRollup")) {
+      while (cursor.moveToNext()) {
+        rollups.put(cursor.getLong(0) + "/" + cursor.getLong(1), cursor.getLong(2));
+      }
+    }
+    assertEquals(expectedRollups, rollups);
+  }
+
+  private static Access access(long apodId, long timestamp, int views) {
+    Access access = new Access();
+    access.setApodId(apodId);
+    access.setTimestamp(timestamp);
+    access.setViews(views);
+    return access;
+  }
+
+  private Map<Long, long[]> selectStats() {
+    Map<Long, long[]> stats = new HashMap<>();
+    try (Cursor cursor = db.query("SELECT apod_id, access_count, last_access FROM AccessStats")) {
+      while (cursor.moveToNext()) {
+        stats.put(cursor.getLong(0), new long[]{cursor.getLong(1), cursor.getLong(2)});
+      }
+    }
+    return stats;
+  }
+
+  private long queryLong(String query) {
+    try (Cursor cursor = db.query(query)) {
+      cursor.moveToFirst();
+      return cursor.getLong(0);
+    }
+  }
+
+  // The stats trigger, as a new install gets it.
+  private static class StatsTriggerCallback extends RoomDatabase.Callback {
+
+    @Override
+    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+      db.execSQL(ApodDatabase.Migrations.ACCESS_STATS_TRIGGER);
+    }
+
+  }
+
+}
@@ -0,0 +1,126 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * The date lookup and per-APoD access queries on a version 4 database (millisecond dates, Access
+ * indexed on apod_id alone), then the same queries on that database after migrating it to the
+ * current version (epoch days, Access indexed on apod_id and timestamp). Results, with the time
+ * the migration itself took, are written to logcat under {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationBenchmark {
+
+  private static final String TAG = "MigrationBenchmark";
+  private static final String TEST_DB = "migration-benchmark";
+  private static final int LATEST_VERSION = 7;
+  private static final int APODS = 5_000;
+  private static final int ACCESSES_PER_APOD = 20;
+  private static final int LOOKUPS = 1_000;
+  private static final long FIRST_DAY = 9_000;
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final String DATE_QUERY = "SELECT * FROM Apod WHERE date = ?";
+  private static final String HISTORY_QUERY =
+      "SELECT * FROM Access WHERE apod_id = ? ORDER BY timestamp DESC";
+  private static final String LAST_ACCESS_QUERY =
+      "SELECT MAX(timestamp) FROM Access WHERE apod_id = ?";
+
+  @Rule
+  public MigrationTestHelper helper = new MigrationTestHelper(
+      InstrumentationRegistry.getInstrumentation(), ApodDatabase.class.getCanonicalName(),
+      new FrameworkSQLiteOpenHelperFactory());
+
+  @Test
+  public void beforeAndAfter() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 4);
+    populate(db);
+    measure(db, "before", DAY_MILLIS);
+    db.close();
+
+    long start = SystemClock.elapsedRealtimeNanos();
+    db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, false,
+        ApodDatabase.Migrations.MIGRATION_4_5, ApodDatabase.Migrations.MIGRATION_5_6,
+        ApodDatabase.Migrations.MIGRATION_6_7);
+    Log.i(TAG, String.format("migration 4 to %d: %.1f ms",
+        LATEST_VERSION, (SystemClock.elapsedRealtimeNanos() - start) / 1e6));
+    measure(db, "after", 1);
+    db.close();
+  }
+
+  private void measure(SupportSQLiteDatabase db, String label, long dateScale) {
+    Random random = new Random(LOOKUPS);
+    long dates = 0;
+    long history = 0;
+    long lastAccess = 0;
+    for (int i = 0; i < LOOKUPS; i++) {
+      long id = 1 + random.nextInt(APODS);
+      long start = SystemClock.elapsedRealtimeNanos();
+      drain(db, DATE_QUERY, (FIRST_DAY + id) * dateScale);
+      dates += SystemClock.elapsedRealtimeNanos() - start;
+      start = SystemClock.elapsedRealtimeNanos();
+      drain(db, HISTORY_QUERY, id);
+      history += SystemClock.elapsedRealtimeNanos() - start;
+      start = SystemClock.elapsedRealtimeNanos();
+      drain(db, LAST_ACCESS_QUERY, id);
+      lastAccess += SystemClock.elapsedRealtimeNanos() - start;
+    }
+    Log.i(TAG, String.format(
+        "%s, %d lookups: by date %.1f ms, access history %.1f ms, last access %.1f ms",
+        label, LOOKUPS, dates / 1e6, history / 1e6, lastAccess / 1e6));
+  }
+
+  private static void drain(SupportSQLiteDatabase db, String query, long argument) {
+    try (Cursor cursor = db.query(query, new Object[]{argument})) {
+      assertTrue(cursor.moveToFirst());
+      //noinspection StatementWithEmptyBody
+      while (cursor.moveToNext()) {
+      }
+    }
+  }
+
+  // Dates as UTC midnights, as version 4 stored them on a device in UTC. Access rows are inserted
+  // in time order, but spread across APoDs, so each APoD's rows are scattered through the table.
+  private static void populate(SupportSQLiteDatabase db) {
+    Random random = new Random(APODS);
+    db.beginTransaction();
+    try {
+      SupportSQLiteStatement apod = db.compileStatement("INSERT INTO Apod "
+          + "(apod_id, date, title, description, media_type, url) VALUES (?, ?, ?, ?, 0, ?)");
+      for (int i = 1; i <= APODS; i++) {
+        apod.bindLong(1, i);
+        apod.bindLong(2, (FIRST_DAY + i) * DAY_MILLIS);
+        apod.bindString(3, "Title " + i);
+        apod.bindString(4, "Description " + i);
+        apod.bindString(5, "https://apod.nasa.gov/apod/image/" + i + ".jpg");
+        apod.executeInsert();
+      }
+      SupportSQLiteStatement access =
+          db.compileStatement("INSERT INTO Access (apod_id, timestamp) VALUES (?, ?)");
+      for (int i = 0; i < APODS * ACCESSES_PER_APOD; i++) {
+        access.bindLong(1, 1 + random.nextInt(APODS));
+        access.bindLong(2, i * 1000L);
+        access.executeInsert();
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+}
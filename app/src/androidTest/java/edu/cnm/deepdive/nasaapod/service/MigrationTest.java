@@ -0,0 +1,183 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import java.io.IOException;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Walks the exported schemas from version 1 to the current one through {@link
+ * ApodDatabase.Migrations#ALL}, checking both the resulting schema (against the exported JSON) and
+ * the data carried across.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+  private static final String TEST_DB = "migration-test";
+  private static final int LATEST_VERSION = 7;
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  // 2020-03-01.
+  private static final long DAY = 18_322;
+
+  @Rule
+  public MigrationTestHelper helper = new MigrationTestHelper(
+      InstrumentationRegistry.getInstrumentation(), ApodDatabase.class.getCanonicalName(),
+      new FrameworkSQLiteOpenHelperFactory());
+
+  private TimeZone deviceZone;
+
+  // Dates are read in the device's zone first; pin it, so the results don't depend on the device.
+  @Before
+  public void setUp() {
+    deviceZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+  }
+
+  @After
+  public void tearDown() {
+    TimeZone.setDefault(deviceZone);
+  }
+
+  @Test
+  public void migrateAll() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1);
+    // The same day, saved at local midnight in UTC+13 and in UTC-10, and the next day in UTC.
+    insertApod(db, 1, DAY * DAY_MILLIS - 13 * HOUR_MILLIS, "Horsehead Nebula");
+    insertApod(db, 2, DAY * DAY_MILLIS + 10 * HOUR_MILLIS, "Horsehead Nebula");
+    insertApod(db, 3, (DAY + 1) * DAY_MILLIS, "Orion Rising");
+    insertAccess(db, 1, 1000);
+    insertAccess(db, 1, 2000);
+    insertAccess(db, 2, 3000);
+    insertAccess(db, 3, 4000);
+    db.close();
+
+    db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true,
+        ApodDatabase.Migrations.ALL);
+
+    assertEquals(2, queryLong(db, "SELECT COUNT(*) FROM Apod"));
+    assertEquals(DAY, queryLong(db, "SELECT date FROM Apod WHERE apod_id = 1"));
+    assertEquals(DAY + 1, queryLong(db, "SELECT date FROM Apod WHERE apod_id = 3"));
+    // The duplicate's access moved to the row that was kept, and the stats were rebuilt.
+    assertEquals(3, queryLong(db, "SELECT COUNT(*) FROM Access WHERE apod_id = 1"));
+    assertEquals(3, queryLong(db, "SELECT access_count FROM AccessStats WHERE apod_id = 1"));
+    assertEquals(3000, queryLong(db, "SELECT last_access FROM AccessStats WHERE apod_id = 1"));
+    assertEquals(1, queryLong(db, "SELECT access_count FROM AccessStats WHERE apod_id = 3"));
+    assertEquals(4, queryLong(db, "SELECT SUM(views) FROM Access"));
+    // Rows from before the full-text index were indexed by its rebuild.
+    assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM ApodFts WHERE ApodFts MATCH 'orion'"));
+    assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM ApodFts WHERE ApodFts MATCH 'horsehead'"));
+    assertFalse(hasIndex(db, "index_Access_apod_id"));
+    assertTrue(hasIndex(db, "index_Access_apod_id_timestamp"));
+
+    // The stats trigger counts views.
+    db.execSQL("INSERT INTO Access (apod_id, timestamp, views) VALUES (3, 5000, 4)");
+    assertEquals(5, queryLong(db, "SELECT access_count FROM AccessStats WHERE apod_id = 3"));
+    assertEquals(5000, queryLong(db, "SELECT last_access FROM AccessStats WHERE apod_id = 3"));
+    db.close();
+  }
+
+  @Test
+  public void migrate3To4IndexesExistingRows() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 3);
+    insertApod(db, 1, DAY * DAY_MILLIS, "Horsehead Nebula");
+    insertApod(db, 2, (DAY + 1) * DAY_MILLIS, "Orion Rising");
+    db.close();
+
+    db = helper.runMigrationsAndValidate(TEST_DB, 4, true, ApodDatabase.Migrations.MIGRATION_3_4);
+
+    assertEquals(1, queryLong(db, "SELECT docid FROM ApodFts WHERE ApodFts MATCH 'horsehead'"));
+    assertEquals(2, queryLong(db, "SELECT docid FROM ApodFts WHERE ApodFts MATCH 'orion'"));
+    assertEquals(2,
+        queryLong(db, "SELECT COUNT(*) FROM ApodFts WHERE ApodFts MATCH 'description'"));
+    // Rows added after the migration are indexed by its triggers.
+    insertApod(db, 3, (DAY + 2) * DAY_MILLIS, "Flame Nebula");
+    assertEquals(2, queryLong(db, "SELECT COUNT(*) FROM ApodFts WHERE ApodFts MATCH 'nebula'"));
+    db.close();
+  }
+
+  @Test
+  public void migrate4To5DownloadJobDates() throws IOException {
+    SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 4);
+    insertJob(db, DAY * DAY_MILLIS - 13 * HOUR_MILLIS);
+    insertJob(db, DAY * DAY_MILLIS + 10 * HOUR_MILLIS);
+    insertJob(db, (DAY + 1) * DAY_MILLIS - 5 * HOUR_MILLIS);
+    db.close();
+
+    db = helper.runMigrationsAndValidate(TEST_DB, 5, true, ApodDatabase.Migrations.MIGRATION_4_5);
+
+    // The two jobs for the same day collapse into one.
+    assertEquals(2, queryLong(db, "SELECT COUNT(*) FROM DownloadJob"));
+    assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM DownloadJob WHERE date = " + DAY));
+    assertEquals(1, queryLong(db, "SELECT COUNT(*) FROM DownloadJob WHERE date = " + (DAY + 1)));
+    db.close();
+  }
+
+  @Test
+  public void toEpochDay() {
+    // Every quarter-hour offset from UTC-10 to UTC+13:45; all but UTC itself aren't the device's.
+    for (long offsetMinutes = -10 * 60; offsetMinutes < 14 * 60; offsetMinutes += 15) {
+      long localMidnight = DAY * DAY_MILLIS - offsetMinutes * MINUTE_MILLIS;
+      assertEquals(DAY, ApodDatabase.Migrations.toEpochDay(localMidnight));
+    }
+    // UTC+14 and UTC-11 midnights, outside the device's zone, are taken for UTC-10 and UTC+13.
+    assertEquals(DAY - 1, ApodDatabase.Migrations.toEpochDay(DAY * DAY_MILLIS - 14 * HOUR_MILLIS));
+    assertEquals(DAY + 1, ApodDatabase.Migrations.toEpochDay(DAY * DAY_MILLIS + 11 * HOUR_MILLIS));
+  }
+
+  @Test
+  public void toEpochDayInDeviceZone() {
+    TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+    assertEquals(DAY, ApodDatabase.Migrations.toEpochDay(DAY * DAY_MILLIS - 14 * HOUR_MILLIS));
+    TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Pago_Pago"));
+    assertEquals(DAY, ApodDatabase.Migrations.toEpochDay(DAY * DAY_MILLIS + 11 * HOUR_MILLIS));
+    TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Honolulu"));
+    assertEquals(DAY, ApodDatabase.Migrations.toEpochDay(DAY * DAY_MILLIS + 10 * HOUR_MILLIS));
+  }
+
+  private static void insertApod(SupportSQLiteDatabase db, long id, long date, String title) {
+    db.execSQL("INSERT INTO Apod (apod_id, date, title, description, media_type, url) "
+            + "VALUES (?, ?, ?, ?, 0, ?)",
+        new Object[]{id, date, title, "Description of " + title, "https://example.com/" + id});
+  }
+
+  private static void insertAccess(SupportSQLiteDatabase db, long apodId, long timestamp) {
+    db.execSQL("INSERT INTO Access (apod_id, timestamp) VALUES (?, ?)",
+        new Object[]{apodId, timestamp});
+  }
+
+  private static void insertJob(SupportSQLiteDatabase db, long date) {
+    db.execSQL("INSERT INTO DownloadJob (date, status, attempts, bytes, created) "
+        + "VALUES (?, 0, 0, 0, 0)", new Object[]{date});
+  }
+
+  private static long queryLong(SupportSQLiteDatabase db, String query) {
+    try (Cursor cursor = db.query(query)) {
+      assertTrue(cursor.moveToFirst());
+      return cursor.getLong(0);
+    }
+  }
+
+  private static boolean hasIndex(SupportSQLiteDatabase db, String name) {
+    try (Cursor cursor = db.query(
+        "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = ?", new Object[]{name})) {
+      return cursor.moveToFirst();
+    }
+  }
+
+}
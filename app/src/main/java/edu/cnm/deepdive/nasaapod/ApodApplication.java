@@ -1,17 +1,23 @@
 package edu.cnm.deepdive.nasaapod;
 
 import android.app.Application;
+import android.util.Log;
 import com.facebook.stetho.Stetho;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.squareup.picasso.Picasso;
 import edu.cnm.deepdive.nasaapod.model.repository.ApodRepository;
+import edu.cnm.deepdive.nasaapod.model.repository.DownloadQueueRepository;
 import edu.cnm.deepdive.nasaapod.service.ApodDatabase;
+import edu.cnm.deepdive.nasaapod.service.ApodService;
 import edu.cnm.deepdive.nasaapod.service.GoogleSignInRepository;
 import io.reactivex.schedulers.Schedulers;
 import okhttp3.logging.HttpLoggingInterceptor.Level;
 
 public class ApodApplication extends Application {
 
+  private static final String TAG = ApodApplication.class.getSimpleName();
+  private static final String COMPACTION_FAILURE = "Unable to compact access history.";
+
   @Override
   public void onCreate() {
     super.onCreate();
@@ -23,10 +29,21 @@ public class ApodApplication extends Application {
     );
     GoogleSignInRepository.setContext(this);
     ApodDatabase.setContext(this);
+    ApodService.setContext(this);
     ApodRepository.setContext(this);
+    DownloadQueueRepository.setContext(this);
     ApodDatabase.getInstance().getApodDao().delete()
         .subscribeOn(Schedulers.io())
         .subscribe();
+    DownloadQueueRepository.getInstance().resume();
+    ApodRepository.getInstance().compactAccesses()
+        .subscribe(() -> {}, (throwable) -> Log.e(TAG, COMPACTION_FAILURE, throwable));
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    ApodRepository.getInstance().flushAccesses();
   }
 
 }
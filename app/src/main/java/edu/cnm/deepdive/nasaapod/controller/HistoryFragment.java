@@ -5,9 +5,13 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.appcompat.widget.SearchView;
+import androidx.appcompat.widget.SearchView.OnQueryTextListener;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.RecyclerView;
 import edu.cnm.deepdive.nasaapod.R;
@@ -19,6 +23,12 @@ public class HistoryFragment extends Fragment {
   private RecyclerView apodList;
   private MainViewModel viewModel;
 
+  @Override
+  public void onCreate(@Nullable Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setHasOptionsMenu(true);
+  }
+
   @Override
   public View onCreateView(LayoutInflater inflater, ViewGroup container,
       Bundle savedInstanceState) {
@@ -31,11 +41,31 @@ public class HistoryFragment extends Fragment {
   public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
     super.onViewCreated(view, savedInstanceState);
     viewModel = new ViewModelProvider(getActivity()).get(MainViewModel.class);
-    viewModel.getAllApodSummaries().observe(getViewLifecycleOwner(), (apods) -> {
-      ApodRecyclerAdapter adapter = new ApodRecyclerAdapter(getContext(), apods,
-          (v, apod, pos) -> ((MainActivity) getActivity()).loadApod(apod.getDate()),
-          viewModel::getImage);
-      apodList.setAdapter(adapter);
+    ApodRecyclerAdapter adapter = new ApodRecyclerAdapter(getContext(),
+        (v, apod, pos) -> ((MainActivity) getActivity()).loadApod(apod.getDate()),
+        viewModel::getThumbnail);
+    apodList.setAdapter(adapter);
+    viewModel.getAllApodSummaries().observe(getViewLifecycleOwner(), adapter::submitList);
+  }
+
+  @Override
+  public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+    super.onCreateOptionsMenu(menu, inflater);
+    inflater.inflate(R.menu.history_options, menu);
+    SearchView searchView = (SearchView) menu.findItem(R.id.search).getActionView();
+    searchView.setQueryHint(getString(R.string.search_history));
+    searchView.setOnQueryTextListener(new OnQueryTextListener() {
+      @Override
+      public boolean onQueryTextSubmit(String query) {
+        viewModel.search(query);
+        return true;
+      }
+
+      @Override
+      public boolean onQueryTextChange(String newText) {
+        viewModel.search(newText);
+        return true;
+      }
     });
   }
 
@@ -11,6 +11,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewStub;
 import android.webkit.WebResourceRequest;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
@@ -22,10 +23,17 @@ import androidx.lifecycle.ViewModelProvider;
 import edu.cnm.deepdive.nasaapod.R;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod.MediaType;
+import edu.cnm.deepdive.nasaapod.view.TiledImageView;
 import edu.cnm.deepdive.nasaapod.viewmodel.MainViewModel;
+import java.io.File;
+import java.net.URI;
 
 public class ImageFragment extends Fragment {
 
+  private static final String FILE_SCHEME = "file:";
+
+  private TiledImageView imageView;
+  private ViewStub contentStub;
   private WebView contentView;
   private Apod apod;
   private boolean showDownload = false;
@@ -42,7 +50,9 @@ public class ImageFragment extends Fragment {
   public View onCreateView(@NonNull LayoutInflater inflater,
       ViewGroup container, Bundle savedInstanceState) {
     View root = inflater.inflate(R.layout.fragment_image, container, false);
-    setupWebView(root);
+    imageView = root.findViewById(R.id.image_view);
+    contentStub = root.findViewById(R.id.content_stub);
+    contentView = null;
     return root;
   }
 
@@ -54,8 +64,9 @@ public class ImageFragment extends Fragment {
     viewModel.getApod().observe(getViewLifecycleOwner(), (apod) -> {
       this.apod = apod;
       getActivity().invalidateOptionsMenu();
-      // When it gets image, load in web view.
-      viewModel.getImage(apod, contentView::loadUrl);
+      // When it gets image, show it natively if it's on disk; otherwise load in web view.
+      viewModel.getImage(apod, (path) -> show(apod, path));
+      viewModel.prefetch(apod);
     });
     //Observe permissions.
     viewModel.getPermissions().observe(getViewLifecycleOwner(), (permissions) -> {
@@ -115,9 +126,36 @@ public class ImageFragment extends Fragment {
     }
   }
 
+  private void show(Apod apod, String path) {
+    if (apod.getMediaType() == MediaType.IMAGE && path.startsWith(FILE_SCHEME)) {
+      if (contentView != null) {
+        contentView.setVisibility(View.GONE);
+        contentView.loadUrl("about:blank");
+      }
+      imageView.setVisibility(View.VISIBLE);
+      // Formats the decoder can't open (GIF, for one) still get the web view.
+      imageView.setOnErrorListener((ex) -> showWeb(path));
+      imageView.setImageFile(new File(URI.create(path)));
+      ((MainActivity) getActivity()).showToast(apod.getTitle());
+    } else {
+      showWeb(path);
+    }
+  }
+
+  // The web view (and its browser engine) is only inflated the first time a video needs it.
+  private void showWeb(String url) {
+    imageView.clear();
+    imageView.setVisibility(View.GONE);
+    if (contentView == null) {
+      setupWebView((WebView) contentStub.inflate());
+    }
+    contentView.setVisibility(View.VISIBLE);
+    contentView.loadUrl(url);
+  }
+
   @SuppressLint({"SetJavaScriptEnabled"})
-  private void setupWebView(View root) {
-    contentView = root.findViewById(R.id.content_view);
+  private void setupWebView(WebView webView) {
+    contentView = webView;
     contentView.setWebViewClient(new WebViewClient() {
       @Override
       public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
@@ -25,9 +25,11 @@ import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import edu.cnm.deepdive.android.DateTimePickerFragment;
 import edu.cnm.deepdive.android.DateTimePickerFragment.Mode;
+import edu.cnm.deepdive.nasaapod.BuildConfig;
 import edu.cnm.deepdive.nasaapod.R;
 import edu.cnm.deepdive.nasaapod.service.GoogleSignInRepository;
 import edu.cnm.deepdive.nasaapod.viewmodel.MainViewModel;
+import java.io.File;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedList;
@@ -36,6 +38,7 @@ import java.util.List;
 public class MainActivity extends AppCompatActivity {
 
   private static final int EXTERNAL_STORAGE_REQUEST_CODE = 1000;
+  private static final String METRICS_FILENAME = "network-metrics.txt";
   private MainViewModel viewModel;
   private NavController navController;
   private ProgressBar loading;
@@ -58,13 +61,13 @@ public class MainActivity extends AppCompatActivity {
   public boolean onCreateOptionsMenu(Menu menu) {
     super.onCreateOptionsMenu(menu);
     getMenuInflater().inflate(R.menu.main_options, menu);
+    menu.findItem(R.id.export_metrics).setVisible(BuildConfig.DEBUG);
     return true;
   }
 
   @Override
   public boolean onOptionsItemSelected(@NonNull MenuItem item) {
     boolean handled = true;
-    //noinspection SwitchStatementWithTooFewBranches
     switch (item.getItemId()) {
       case R.id.sign_out:
         GoogleSignInRepository.getInstance().signOut()
@@ -74,6 +77,12 @@ public class MainActivity extends AppCompatActivity {
               startActivity(intent);
             });
         break;
+      case R.id.queue_downloads:
+        queueDownloads();
+        break;
+      case R.id.export_metrics:
+        exportMetrics();
+        break;
       default:
         handled = super.onOptionsItemSelected(item);
     }
@@ -148,15 +157,37 @@ public class MainActivity extends AppCompatActivity {
   private void setupCalendarPicker() {
     calendar = Calendar.getInstance();
     FloatingActionButton calendarFab = findViewById(R.id.calendar_fab);
-    calendarFab.setOnClickListener((v) -> {
-      DateTimePickerFragment fragment = new DateTimePickerFragment();
-      fragment.setCalendar(calendar);
-      fragment.setMode(Mode.DATE);
-      fragment.setOnChangeListener((cal) -> loadApod(cal.getTime()));
-      fragment.show(getSupportFragmentManager(), fragment.getClass().getName());
+    calendarFab.setOnClickListener((v) -> pickDate(calendar, (cal) -> loadApod(cal.getTime())));
+  }
+
+  // Asks for the first, then the last date of the range to save.
+  private void queueDownloads() {
+    pickDate(calendar, (startCalendar) -> {
+      Date startDate = startCalendar.getTime();
+      pickDate(startCalendar, (endCalendar) ->
+          viewModel.queueDownloads(startDate, endCalendar.getTime(), (count) ->
+              showToast(getResources().getQuantityString(R.plurals.downloads_queued, count, count))));
     });
   }
 
+  private void pickDate(Calendar initial, DateTimePickerFragment.OnChangeListener listener) {
+    DateTimePickerFragment fragment = new DateTimePickerFragment();
+    fragment.setCalendar(initial);
+    fragment.setMode(Mode.DATE);
+    fragment.setOnChangeListener(listener);
+    fragment.show(getSupportFragmentManager(), fragment.getClass().getName());
+  }
+
+  private void exportMetrics() {
+    File directory = getExternalFilesDir(null);
+    if (directory == null) {
+      directory = getFilesDir();
+    }
+    File file = new File(directory, METRICS_FILENAME);
+    viewModel.exportMetrics(file,
+        () -> showToast(getString(R.string.metrics_exported, file.getPath())));
+  }
+
   private void navigateTo(int itemId) {
     if (navController.getCurrentDestination().getId() != itemId) {
       navController.navigate(itemId, null, navOptions);
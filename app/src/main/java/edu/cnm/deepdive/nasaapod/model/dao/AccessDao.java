@@ -2,9 +2,13 @@ package edu.cnm.deepdive.nasaapod.model.dao;
 
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import edu.cnm.deepdive.nasaapod.model.entity.Access;
+import edu.cnm.deepdive.nasaapod.model.entity.AccessRollup;
 import io.reactivex.Single;
+import java.util.Collection;
 import java.util.List;
 
 @Dao
@@ -13,7 +17,52 @@ public interface AccessDao {
   @Insert
   Single<Long> insert(Access access);
 
+  @Insert
+  Single<List<Long>> insert(Collection<Access> accesses);
+
   @Query("SELECT * FROM Access WHERE apod_id = :apodId ORDER BY timestamp DESC")
   Single<List<Access>> select(long apodId);
 
+  // Folds the oldest Access rows (by id) past the cutoff, up to limit of them, into AccessRollup,
+  // in one transaction. AccessStats isn't touched: counts and last access times stay as they were.
+  // True if there may be more to fold.
+  @Transaction
+  default boolean compactBatch(long cutoff, int limit) {
+    Long bound = selectCompactionBound(cutoff, limit);
+    if (bound == null) {
+      return false;
+    }
+    for (AccessRollup rollup : selectRollups(bound, cutoff)) {
+      if (insertOrIgnore(rollup) < 0) {
+        addToRollup(rollup.getApodId(), rollup.getDay(), rollup.getAccessCount(),
+            rollup.getLastAccess());
+      }
+    }
+    return deleteCompacted(bound, cutoff) >= limit;
+  }
+
+  // The rest is for compactBatch. A batch's bound is the highest id in it; null when there are
+  // no rows past the cutoff.
+  @Query("SELECT MAX(access_id) FROM "
+      + "(SELECT access_id FROM Access WHERE timestamp < :cutoff ORDER BY access_id LIMIT :limit)")
+  Long selectCompactionBound(long cutoff, int limit);
+
+  // A view's day is its local calendar day, numbered as epoch days the way APoD dates are
+  // (2440587.5 is the Julian day of 1970-01-01 00:00).
+  @Query("SELECT apod_id, "
+      + "CAST(julianday(date(timestamp / 1000, 'unixepoch', 'localtime')) - 2440587.5 AS INTEGER) "
+      + "AS day, SUM(views) AS access_count, MAX(timestamp) AS last_access FROM Access "
+      + "WHERE access_id <= :bound AND timestamp < :cutoff GROUP BY apod_id, day")
+  List<AccessRollup> selectRollups(long bound, long cutoff);
+
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  long insertOrIgnore(AccessRollup rollup);
+
+  @Query("UPDATE AccessRollup SET access_count = access_count + :count, "
+      + "last_access = MAX(last_access, :lastAccess) WHERE apod_id = :apodId AND day = :day")
+  int addToRollup(long apodId, long day, int count, long lastAccess);
+
+  @Query("DELETE FROM Access WHERE access_id <= :bound AND timestamp < :cutoff")
+  int deleteCompacted(long bound, long cutoff);
+
 }
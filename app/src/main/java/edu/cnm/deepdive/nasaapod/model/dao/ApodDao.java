@@ -1,40 +1,40 @@
 package edu.cnm.deepdive.nasaapod.model.dao;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.TypeConverters;
+import androidx.room.Update;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod;
-import edu.cnm.deepdive.nasaapod.model.pojo.ApodWithStats;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase.EpochDayConverters;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+// Every Date in these queries is an APoD date, stored as its epoch day.
 @Dao
+@TypeConverters(EpochDayConverters.class)
 public interface ApodDao {
 
   String APOD_STATS_QUERY = "SELECT \n"
-      + "    a.*, \n"
-      + "    acc.lastAccess, \n"
-      + "    acc.accessCount \n"
+      + "    a.apod_id, \n"
+      + "    a.date, \n"
+      + "    a.title, \n"
+      + "    a.media_type, \n"
+      + "    a.url, \n"
+      + "    s.last_access AS lastAccess, \n"
+      + "    s.access_count AS accessCount \n"
       + "FROM \n"
       + "    Apod AS a \n"
-      + "    LEFT JOIN (\n"
-      + "        SELECT \n"
-      + "            apod_id, \n"
-      + "            MAX(timestamp) AS lastAccess, \n"
-      + "            COUNT(*) AS accessCount \n"
-      + "        FROM \n"
-      + "            Access \n"
-      + "        GROUP BY \n"
-      + "            apod_id \n"
-      + "    ) AS acc \n"
-      + "    ON acc.apod_id = a.apod_id \n"
-      + "ORDER BY \n"
-      + "    a.date DESC;";
+      + "    LEFT JOIN AccessStats AS s \n"
+      + "    ON s.apod_id = a.apod_id \n";
 
   @Insert
   Single<Long> insert(Apod apod);
@@ -45,6 +45,15 @@ public interface ApodDao {
   @Insert
   Single<List<Long>> insert(Apod... apods);
 
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  Single<Long> insertOrIgnore(Apod apod);
+
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  Single<List<Long>> insertOrIgnore(Collection<Apod> apods);
+
+  @Update
+  Single<Integer> update(Apod apod);
+
   @Delete
   Single<Integer> delete(Apod apod);
 
@@ -57,12 +66,38 @@ public interface ApodDao {
   @Query("SELECT * FROM Apod ORDER BY date DESC")
   LiveData<List<Apod>> select();
 
-  @Query(APOD_STATS_QUERY)
-  LiveData<List<ApodWithStats>> selectWithStats();
+  // Keyset pages on the unique date index, for the history list; no OFFSET scans.
+  @Query(APOD_STATS_QUERY + "ORDER BY a.date DESC LIMIT :limit")
+  List<ApodSummary> selectWithStats(int limit);
+
+  @Query(APOD_STATS_QUERY + "WHERE a.date <= :date ORDER BY a.date DESC LIMIT :limit")
+  List<ApodSummary> selectWithStatsFrom(Date date, int limit);
+
+  @Query(APOD_STATS_QUERY + "WHERE a.date < :date ORDER BY a.date DESC LIMIT :limit")
+  List<ApodSummary> selectWithStatsBefore(Date date, int limit);
+
+  @Query(APOD_STATS_QUERY + "WHERE a.date > :date ORDER BY a.date ASC LIMIT :limit")
+  List<ApodSummary> selectWithStatsAfter(Date date, int limit);
+
+  // Matches in the title rank first, then by number of matches, then newest first. offsets()
+  // gives 4 space-separated integers per match, so its spaces count the matches. Ranking needs
+  // every match, so this pages by offset; the FTS index keeps the match itself fast.
+  @Query(APOD_STATS_QUERY
+      + "    JOIN ApodFts ON ApodFts.rowid = a.apod_id \n"
+      + "WHERE ApodFts MATCH :query \n"
+      + "ORDER BY \n"
+      + "    (a.apod_id IN (SELECT docid FROM ApodFts WHERE title MATCH :query)) DESC, \n"
+      + "    (length(offsets(ApodFts)) - length(replace(offsets(ApodFts), ' ', '')) + 1) / 4 \n"
+      + "        DESC, \n"
+      + "    a.date DESC")
+  DataSource.Factory<Integer, ApodSummary> search(String query);
 
   @Query("SELECT * FROM Apod WHERE date = :date")
   Maybe<Apod> select(Date date);
 
+  @Query("SELECT date FROM Apod WHERE date BETWEEN :startDate AND :endDate")
+  Single<List<Date>> selectDates(Date startDate, Date endDate);
+
   @Query("SELECT * FROM Apod WHERE apod_id = :id")
   Single<Apod> select(long id);
 
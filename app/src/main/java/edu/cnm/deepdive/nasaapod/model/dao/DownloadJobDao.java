@@ -0,0 +1,34 @@
+package edu.cnm.deepdive.nasaapod.model.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+import edu.cnm.deepdive.nasaapod.model.entity.DownloadJob;
+import edu.cnm.deepdive.nasaapod.model.entity.DownloadJob.Status;
+import io.reactivex.Single;
+import java.util.Collection;
+import java.util.List;
+
+@Dao
+public interface DownloadJobDao {
+
+  // Dates already queued (in any state) are left alone.
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  Single<List<Long>> insert(Collection<DownloadJob> jobs);
+
+  @Update
+  Single<Integer> update(DownloadJob job);
+
+  @Query("UPDATE DownloadJob SET status = :to WHERE status = :from")
+  Single<Integer> updateStatus(Status from, Status to);
+
+  @Query("SELECT * FROM DownloadJob WHERE status = :status ORDER BY date")
+  Single<List<DownloadJob>> select(Status status);
+
+  @Query("SELECT COUNT(*) FROM DownloadJob WHERE status = :status")
+  LiveData<Integer> count(Status status);
+
+}
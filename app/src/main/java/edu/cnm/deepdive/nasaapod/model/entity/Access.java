@@ -1,13 +1,14 @@
 package edu.cnm.deepdive.nasaapod.model.entity;
 
-import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
-import java.util.Date;
 
 @Entity(
+    // Leads with apod_id, so it also serves lookups by APoD alone.
+    indices = @Index(value = {"apod_id", "timestamp"}),
     foreignKeys = @ForeignKey(
         entity = Apod.class,
         parentColumns = "apod_id",
@@ -21,11 +22,14 @@ public class Access {
   @PrimaryKey(autoGenerate = true)
   private long id;
 
-  @ColumnInfo(name = "apod_id", index = true)
+  @ColumnInfo(name = "apod_id")
   private long apodId;
 
-  @NonNull
-  private Date timestamp = new Date();
+  private long timestamp = System.currentTimeMillis();
+
+  // Views folded into this row: repeat views of the APoD shortly after it was first written down.
+  @ColumnInfo(defaultValue = "1")
+  private int views = 1;
 
   public long getId() {
     return id;
@@ -43,13 +47,20 @@ public class Access {
     this.apodId = apodId;
   }
 
-  @NonNull
-  public Date getTimestamp() {
+  public long getTimestamp() {
     return timestamp;
   }
 
-  public void setTimestamp(@NonNull Date timestamp) {
+  public void setTimestamp(long timestamp) {
     this.timestamp = timestamp;
   }
 
+  public int getViews() {
+    return views;
+  }
+
+  public void setViews(int views) {
+    this.views = views;
+  }
+
 }
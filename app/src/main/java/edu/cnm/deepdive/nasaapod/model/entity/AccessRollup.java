@@ -0,0 +1,63 @@
+package edu.cnm.deepdive.nasaapod.model.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+// Views of one APoD on one day, folded in from Access rows past the retention age. The day is the
+// local calendar day the views fell on, as an epoch day (the same numbering as Apod.date).
+@Entity(
+    primaryKeys = {"apod_id", "day"},
+    foreignKeys = @ForeignKey(
+        entity = Apod.class,
+        parentColumns = "apod_id",
+        childColumns = "apod_id",
+        onDelete = ForeignKey.CASCADE
+    )
+)
+public class AccessRollup {
+
+  @ColumnInfo(name = "apod_id")
+  private long apodId;
+
+  private long day;
+
+  @ColumnInfo(name = "access_count")
+  private int accessCount;
+
+  @ColumnInfo(name = "last_access")
+  private long lastAccess;
+
+  public long getApodId() {
+    return apodId;
+  }
+
+  public void setApodId(long apodId) {
+    this.apodId = apodId;
+  }
+
+  public long getDay() {
+    return day;
+  }
+
+  public void setDay(long day) {
+    this.day = day;
+  }
+
+  public int getAccessCount() {
+    return accessCount;
+  }
+
+  public void setAccessCount(int accessCount) {
+    this.accessCount = accessCount;
+  }
+
+  public long getLastAccess() {
+    return lastAccess;
+  }
+
+  public void setLastAccess(long lastAccess) {
+    this.lastAccess = lastAccess;
+  }
+
+}
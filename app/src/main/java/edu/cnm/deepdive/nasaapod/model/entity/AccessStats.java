@@ -0,0 +1,53 @@
+package edu.cnm.deepdive.nasaapod.model.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+// One row per viewed APoD, kept current by a trigger on Access inserts (see ApodDatabase).
+@Entity(
+    foreignKeys = @ForeignKey(
+        entity = Apod.class,
+        parentColumns = "apod_id",
+        childColumns = "apod_id",
+        onDelete = ForeignKey.CASCADE
+    )
+)
+public class AccessStats {
+
+  @ColumnInfo(name = "apod_id")
+  @PrimaryKey
+  private long apodId;
+
+  @ColumnInfo(name = "access_count")
+  private int accessCount;
+
+  @ColumnInfo(name = "last_access")
+  private long lastAccess;
+
+  public long getApodId() {
+    return apodId;
+  }
+
+  public void setApodId(long apodId) {
+    this.apodId = apodId;
+  }
+
+  public int getAccessCount() {
+    return accessCount;
+  }
+
+  public void setAccessCount(int accessCount) {
+    this.accessCount = accessCount;
+  }
+
+  public long getLastAccess() {
+    return lastAccess;
+  }
+
+  public void setLastAccess(long lastAccess) {
+    this.lastAccess = lastAccess;
+  }
+
+}
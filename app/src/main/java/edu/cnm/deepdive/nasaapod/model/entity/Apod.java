@@ -7,8 +7,10 @@ import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverter;
+import androidx.room.TypeConverters;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase.EpochDayConverters;
 import java.util.Date;
 
 @Entity(
@@ -22,6 +24,7 @@ public class Apod {
 
   @NonNull
   @Expose
+  @TypeConverters(EpochDayConverters.class)
   private Date date;
 
   @NonNull
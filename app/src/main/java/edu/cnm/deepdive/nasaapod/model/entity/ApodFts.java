@@ -0,0 +1,36 @@
+package edu.cnm.deepdive.nasaapod.model.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+// Full-text index over Apod's title and description; its docid is the APoD's apod_id.
+@Fts4(contentEntity = Apod.class)
+@Entity
+public class ApodFts {
+
+  @NonNull
+  private String title;
+
+  @NonNull
+  private String description;
+
+  @NonNull
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(@NonNull String title) {
+    this.title = title;
+  }
+
+  @NonNull
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(@NonNull String description) {
+    this.description = description;
+  }
+
+}
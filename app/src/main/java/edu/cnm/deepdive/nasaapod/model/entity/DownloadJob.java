@@ -0,0 +1,109 @@
+package edu.cnm.deepdive.nasaapod.model.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import androidx.room.TypeConverter;
+import androidx.room.TypeConverters;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase.EpochDayConverters;
+import java.util.Date;
+
+@Entity(
+    indices = {
+        @Index(value = "date", unique = true),
+        @Index(value = "status")
+    }
+)
+public class DownloadJob {
+
+  @ColumnInfo(name = "download_job_id")
+  @PrimaryKey(autoGenerate = true)
+  private long id;
+
+  @NonNull
+  @TypeConverters(EpochDayConverters.class)
+  private Date date;
+
+  @NonNull
+  private Status status = Status.PENDING;
+
+  private int attempts;
+
+  private long bytes;
+
+  @NonNull
+  private Date created = new Date();
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  @NonNull
+  public Date getDate() {
+    return date;
+  }
+
+  public void setDate(@NonNull Date date) {
+    this.date = date;
+  }
+
+  @NonNull
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(@NonNull Status status) {
+    this.status = status;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public void setBytes(long bytes) {
+    this.bytes = bytes;
+  }
+
+  @NonNull
+  public Date getCreated() {
+    return created;
+  }
+
+  public void setCreated(@NonNull Date created) {
+    this.created = created;
+  }
+
+  public enum Status {
+    PENDING,
+    RUNNING,
+    DONE,
+    SKIPPED,
+    FAILED;
+
+    @TypeConverter
+    public static Integer toInteger(Status value) {
+      return (value != null) ? value.ordinal() : null;
+    }
+
+    @TypeConverter
+    public static Status toStatus(Integer value) {
+      return (value != null) ? Status.values()[value] : null;
+    }
+
+  }
+
+}
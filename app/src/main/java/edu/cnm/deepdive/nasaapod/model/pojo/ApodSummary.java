@@ -0,0 +1,103 @@
+package edu.cnm.deepdive.nasaapod.model.pojo;
+
+import android.annotation.SuppressLint;
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.TypeConverters;
+import edu.cnm.deepdive.nasaapod.model.entity.Apod.MediaType;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase.EpochDayConverters;
+import java.util.Date;
+
+// Just what a history row shows; description and copyright stay in the database until needed.
+public class ApodSummary {
+
+  @ColumnInfo(name = "apod_id")
+  private long id;
+
+  @NonNull
+  @TypeConverters(EpochDayConverters.class)
+  private Date date;
+
+  @NonNull
+  private String title;
+
+  @NonNull
+  @ColumnInfo(name = "media_type")
+  private MediaType mediaType;
+
+  @NonNull
+  private String url;
+
+  private long lastAccess;
+
+  private int accessCount;
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  @NonNull
+  public Date getDate() {
+    return date;
+  }
+
+  public void setDate(@NonNull Date date) {
+    this.date = date;
+  }
+
+  @NonNull
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(@NonNull String title) {
+    this.title = title;
+  }
+
+  @NonNull
+  public MediaType getMediaType() {
+    return mediaType;
+  }
+
+  public void setMediaType(@NonNull MediaType mediaType) {
+    this.mediaType = mediaType;
+  }
+
+  @NonNull
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(@NonNull String url) {
+    this.url = url;
+  }
+
+  public long getLastAccess() {
+    return lastAccess;
+  }
+
+  public void setLastAccess(long lastAccess) {
+    this.lastAccess = lastAccess;
+  }
+
+  public int getAccessCount() {
+    return accessCount;
+  }
+
+  public void setAccessCount(int accessCount) {
+    this.accessCount = accessCount;
+  }
+
+  @SuppressLint("DefaultLocale")
+  @NonNull
+  @Override
+  public String toString() {
+    return String.format("%s (%s); last accessed = %s; access count = %d",
+        title, mediaType, new Date(lastAccess), accessCount);
+  }
+
+}
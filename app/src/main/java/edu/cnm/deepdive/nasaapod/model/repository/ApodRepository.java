@@ -1,58 +1,153 @@
 package edu.cnm.deepdive.nasaapod.model.repository;
 
+import android.annotation.SuppressLint;
 import android.app.Application;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.CompressFormat;
+import android.graphics.BitmapFactory;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
 import android.net.Uri;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
 import android.provider.MediaStore.Images.Media;
 import android.provider.MediaStore.MediaColumns;
+import android.util.Log;
+import android.util.LruCache;
 import android.webkit.MimeTypeMap;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 import edu.cnm.deepdive.nasaapod.BuildConfig;
+import edu.cnm.deepdive.nasaapod.R;
 import edu.cnm.deepdive.nasaapod.model.dao.AccessDao;
 import edu.cnm.deepdive.nasaapod.model.dao.ApodDao;
 import edu.cnm.deepdive.nasaapod.model.entity.Access;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod.MediaType;
-import edu.cnm.deepdive.nasaapod.model.pojo.ApodWithStats;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
 import edu.cnm.deepdive.nasaapod.service.ApodDatabase;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase.EpochDayConverters;
 import edu.cnm.deepdive.nasaapod.service.ApodService;
+import edu.cnm.deepdive.nasaapod.service.DiskCache;
+import edu.cnm.deepdive.nasaapod.service.NetworkPriority;
+import edu.cnm.deepdive.nasaapod.service.SegmentedDownloader;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
-import io.reactivex.SingleSource;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.DisposableCompletableObserver;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import retrofit2.Response;
 
 public class ApodRepository {
 
-  private static final int NETWORK_THREAD_COUNT = 10;
+  private static final String TAG = ApodRepository.class.getSimpleName();
+  // Longest span requested from NASA in a single range call.
+  private static final int RANGE_CHUNK_DAYS = 30;
+  private static final int INSERT_BATCH_SIZE = 10;
   // Regex string to pull file name and give it name with date.
   private static final Pattern URL_FILENAME_PATTERN =
       Pattern.compile("^.*/([^/#?]+)(?:\\?.*)?(?:#.*)?$");
   // % placeholder for first parameter, t is date or time, Y is 4 digit year, m is two digit month, d is two digit,
   private static final String LOCAL_FILENAME_FORMAT = "%1$tY%1$tm%1$td-%2$s";
+  // HD files often share the standard file's name; keep them apart in the cache.
+  private static final String HD_FILENAME_FORMAT = "%1$tY%1$tm%1$td-hd-%2$s";
+  private static final int DOWNLOAD_SEGMENTS = 4;
   private static final String MEDIA_RECORD_FAILURE = "Unable to create MediaStore record.";
-  private static final int BUFFER_SIZE = 1 << 14;
+  private static final String RANGE_FORMAT = "bytes=%d-";
+  private static final String CONTENT_RANGE_HEADER = "Content-Range";
+  // Start, then total length (absent when the server sends "*").
+  private static final Pattern CONTENT_RANGE_PATTERN =
+      Pattern.compile("^bytes (\\d+)-\\d+/(?:(\\d+)|\\*)$");
+  private static final String IMAGE_CONTENT_TYPE = "image";
+  private static final int HTTP_PARTIAL_CONTENT = 206;
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+  private static final String DOWNLOAD_FAILURE_FORMAT = "Image download failed (HTTP %d).";
+  private static final String CONTENT_TYPE_FAILURE_FORMAT = "Unexpected content type: %s.";
+  private static final String LENGTH_FAILURE_FORMAT = "Received %d bytes; expected %d.";
+  private static final String COPY_STALL_FAILURE_FORMAT = "Copy stalled at byte %d of %d.";
+  private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+  private static final String FILE_SCHEME = "file:";
+  private static final int THUMBNAIL_QUALITY = 85;
+  private static final int RESOLVED_PATH_CACHE_SIZE = 512;
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final int PREFETCH_JUMP_DAYS = 7;
+  private static final String APOD_TIME_ZONE = "America/New_York";
+  private static final int ACCESS_BATCH_SIZE = 20;
+  private static final String ACCESS_FLUSH_FAILURE = "Unable to record APoD views.";
+  private static final int HISTORY_PAGE_SIZE = 30;
+  private static final int HISTORY_MAX_SIZE = 240;
+  // Anything but letters and digits would be FTS query syntax; words are matched as prefixes.
+  private static final Pattern SEARCH_SEPARATOR_PATTERN = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final String SEARCH_PREFIX_SUFFIX = "* ";
+  private static final long ACCESS_FLUSH_DELAY = 5;
+  private static final long ACCESS_MERGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final int COMPACTION_BATCH_SIZE = 500;
 
   private final ApodDatabase database;
   private final ApodService nasa;
-  private final Executor networkPool;
+  private final DiskCache imageCache;
+  private final DiskCache thumbnailCache;
+  private final SegmentedDownloader downloader;
+  private final int thumbnailWidth;
+  private final int thumbnailHeight;
+  private final LruCache<Long, String> resolvedImages;
+  private final LruCache<Long, String> resolvedThumbnails;
+  private final Map<Long, Single<Apod>> inFlight;
+  private final Map<String, ImageRequest> imagesInFlight;
+  private final CompositeDisposable prefetching;
+  private final List<Access> pendingAccesses;
+  private final Map<Long, Access> recentAccesses;
+  private final AtomicLong hitCount;
+  private final AtomicLong missCount;
+  private final AtomicLong coalescedCount;
+  private Date lastPrefetchDate;
+  private int direction;
+  private Disposable scheduledFlush;
+  private LiveData<PagedList<ApodSummary>> history;
 
   private static Application context;
 
@@ -62,8 +157,26 @@ public class ApodRepository {
     }
     database = ApodDatabase.getInstance();
     nasa = ApodService.getInstance();
-    // Sets so many threads. If no threads open, goes in que.
-    networkPool = Executors.newFixedThreadPool(NETWORK_THREAD_COUNT);
+    imageCache = new DiskCache(getCacheDirectory(), BuildConfig.IMAGE_CACHE_SIZE);
+    thumbnailCache = new DiskCache(new File(context.getCacheDir(), THUMBNAIL_DIRECTORY),
+        BuildConfig.THUMBNAIL_CACHE_SIZE);
+    resolvedImages = new LruCache<>(RESOLVED_PATH_CACHE_SIZE);
+    resolvedThumbnails = new LruCache<>(RESOLVED_PATH_CACHE_SIZE);
+    imageCache.setOnChangeListener((key) -> forget(resolvedImages, imageCache, key));
+    thumbnailCache.setOnChangeListener((key) -> forget(resolvedThumbnails, thumbnailCache, key));
+    downloader = new SegmentedDownloader(nasa, DOWNLOAD_SEGMENTS,
+        NetworkPriority.DOWNLOAD.getScheduler());
+    Resources resources = context.getResources();
+    thumbnailWidth = resources.getDimensionPixelSize(R.dimen.thumbnail_width);
+    thumbnailHeight = resources.getDimensionPixelSize(R.dimen.thumbnail_height);
+    inFlight = new ConcurrentHashMap<>();
+    imagesInFlight = new ConcurrentHashMap<>();
+    prefetching = new CompositeDisposable();
+    pendingAccesses = new ArrayList<>();
+    recentAccesses = new HashMap<>();
+    hitCount = new AtomicLong();
+    missCount = new AtomicLong();
+    coalescedCount = new AtomicLong();
   }
 
   public static void setContext(Application context) {
@@ -76,86 +189,507 @@ public class ApodRepository {
 
   //
   public Single<Apod> get(Date date) {
+    return get(date, true);
+  }
+
+  // recordAccess is false for background work (e.g. bulk downloads) that isn't the user viewing it.
+  public Single<Apod> get(Date date, boolean recordAccess) {
     ApodDao dao = database.getApodDao();
     return dao.select(date)
         // Runs on background thread.
         .subscribeOn(Schedulers.io())
-        // If empty result. Provides other task if empty.
-        .switchIfEmpty((SingleSource<? extends Apod>) (observer) ->
-            // Gets url from nasa. Fails if we get a date that is not there. Crashes.
-            nasa.get(BuildConfig.API_KEY, ApodService.DATE_FORMATTER.format(date))
-                // Does on different thread. Pool of threads, limited in size.
-                .subscribeOn(Schedulers.from(networkPool))
-                // Single result, return same thing or new. Sets ID and returns apod object.
-                .flatMap((apod) ->
-                    dao.insert(apod)
-                        .map((id) -> {
-                          apod.setId(id);
-                          return apod;
-                        })
-                )
-                .subscribe(observer)
-        )
+        .doOnSuccess((apod) -> hitCount.incrementAndGet())
+        // If empty result, joins (or starts) the one network request for this date.
+        .switchIfEmpty(Single.defer(() -> fetch(date)))
         // However we get apod object, invokes insert access.
-        .doAfterSuccess(this::insertAccess);
+        .doAfterSuccess((apod) -> {
+          if (recordAccess) {
+            insertAccess(apod);
+          }
+        });
+  }
+
+  // Fills the database with every APoD from startDate to endDate, one request per chunk of days.
+  public Completable get(Date startDate, Date endDate) {
+    return get(startDate, endDate, NetworkPriority.PREFETCH);
+  }
+
+  // Same, with the requests on priority's pool, and held to its share of the API quota.
+  public Completable get(Date startDate, Date endDate, @NonNull NetworkPriority priority) {
+    // The API answers a range reaching past its own today with a 400, failing the whole chunk.
+    Date latestDate = getLatestDate();
+    if (endDate.after(latestDate)) {
+      endDate = latestDate;
+    }
+    List<Completable> tasks = new LinkedList<>();
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(startDate);
+    while (!calendar.getTime().after(endDate)) {
+      Date chunkStart = calendar.getTime();
+      int days = 0;
+      Date chunkEnd;
+      do {
+        chunkEnd = calendar.getTime();
+        days++;
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+      } while (days < RANGE_CHUNK_DAYS && !calendar.getTime().after(endDate));
+      tasks.add(getRange(chunkStart, chunkEnd, days, priority));
+    }
+    return Completable.concat(tasks);
   }
 
-  public LiveData<List<ApodWithStats>> get() {
-    return database.getApodDao().selectWithStats();
+  // Only the pages near what's on screen stay in memory; far ones are dropped past maxSize.
+  // Table changes reach the list at most once per window, and only while it's being observed.
+  // There's one history list, so returning to it (e.g. clearing a search) keeps its position.
+  public synchronized LiveData<PagedList<ApodSummary>> get() {
+    if (history != null) {
+      return history;
+    }
+    HistoryDataSource.Factory factory =
+        new HistoryDataSource.Factory(database, BuildConfig.HISTORY_INVALIDATION_WINDOW);
+    MediatorLiveData<PagedList<ApodSummary>> history =
+        new MediatorLiveData<PagedList<ApodSummary>>() {
+          @Override
+          protected void onActive() {
+            super.onActive();
+            factory.setActive(true);
+          }
+
+          @Override
+          protected void onInactive() {
+            factory.setActive(false);
+            super.onInactive();
+          }
+        };
+    history.addSource(new LivePagedListBuilder<>(factory, getHistoryConfig()).build(),
+        history::setValue);
+    this.history = history;
+    return history;
+  }
+
+  // History rows whose title or description contain every word typed, each as a prefix. A query
+  // with no words in it gives back the whole history.
+  public LiveData<PagedList<ApodSummary>> search(@NonNull String text) {
+    StringBuilder query = new StringBuilder();
+    for (String word : SEARCH_SEPARATOR_PATTERN.split(text.trim())) {
+      if (!word.isEmpty()) {
+        query.append(word).append(SEARCH_PREFIX_SUFFIX);
+      }
+    }
+    if (query.length() == 0) {
+      return get();
+    }
+    return new LivePagedListBuilder<>(
+        database.getApodDao().search(query.toString().trim()), getHistoryConfig()).build();
+  }
+
+  private PagedList.Config getHistoryConfig() {
+    return new PagedList.Config.Builder()
+        .setPageSize(HISTORY_PAGE_SIZE)
+        .setInitialLoadSizeHint(HISTORY_PAGE_SIZE * 2)
+        .setPrefetchDistance(HISTORY_PAGE_SIZE * 2)
+        .setMaxSize(HISTORY_MAX_SIZE)
+        .setEnablePlaceholders(false)
+        .build();
   }
 
   public Single<String> getImage(@NonNull Apod apod) {
-    boolean canBeLocal = (apod.getMediaType() == MediaType.IMAGE);
-    File file = canBeLocal ? getFile(apod) : null;
-    return Maybe.fromCallable(() ->
-        canBeLocal ? (file.exists() ? file.toURI().toString() : null) : apod.getUrl()
-         )
-        .switchIfEmpty((SingleSource<String>) (observer) ->
-            nasa.getFile(apod.getUrl())
-            .map((body) -> {
-              try {
-                return downloadCache(body, file);
-              } catch (IOException ex) {
-                return apod.getUrl();
-              }
-            })
-            .subscribeOn(Schedulers.from(networkPool))
-            .subscribe(observer)
-        );
+    return getImage(apod, NetworkPriority.INTERACTIVE);
+  }
+
+  public Single<String> getImage(@NonNull Apod apod, @NonNull NetworkPriority priority) {
+    return getImage(apod.getId(), apod.getDate(), apod.getMediaType(), apod.getUrl(), priority);
+  }
+
+  // Takes only the columns it needs, so list rows can ask for images without a full Apod.
+  private Single<String> getImage(long id, @NonNull Date date, @NonNull MediaType mediaType,
+      @NonNull String url, @NonNull NetworkPriority priority) {
+    // Rows scrolling back into view are answered from memory: no regex, no filesystem.
+    String resolved = resolvedImages.get(id);
+    if (resolved != null) {
+      return Single.just(resolved);
+    }
+    String key = (mediaType == MediaType.IMAGE)
+        ? getCacheKey(date, url, LOCAL_FILENAME_FORMAT)
+        : null;
+    if (key == null) {
+      return Single.just(url);
+    }
+    ImageRequest existing = imagesInFlight.get(key);
+    if (existing != null) {
+      return existing.join(priority);
+    }
+    ImageRequest request = new ImageRequest(priority);
+    request.result = Maybe.fromCallable(() -> {
+      File file = imageCache.get(key);
+      return (file != null) ? file.toURI().toString() : null;
+    })
+        // Cache lookup may wait for the startup scan; keep it off the UI thread.
+        .subscribeOn(Schedulers.io())
+        .switchIfEmpty(Single.defer(() -> {
+          // Picks up where an interrupted download of this file left off, if there was one.
+          long offset = imageCache.getPartialFile(key).length();
+          String range = (offset > 0) ? String.format(RANGE_FORMAT, offset) : null;
+          return request.start(nasa.getFile(url, range)
+              .map((response) -> {
+                try {
+                  return downloadCache(response, key, offset);
+                } catch (IOException ex) {
+                  return url;
+                }
+              }))
+              // Dropped from a full queue: the remote URL still shows the image.
+              .onErrorReturnItem(url);
+        }))
+        .doOnSuccess((path) -> remember(resolvedImages, id, path))
+        .doFinally(() -> imagesInFlight.remove(key, request))
+        // Shared, not cached: a prefetch and the screen asking for the same file get one download
+        // (never two writers on one partial file), and it's still cancelled once nobody wants it.
+        .toObservable()
+        .share()
+        .singleOrError();
+    existing = imagesInFlight.putIfAbsent(key, request);
+    return (existing != null) ? existing.join(priority) : request.result;
+  }
+
+  // Warms the days around the one being shown, at prefetch priority: metadata for a window that
+  // leans toward the way the user has been stepping, and images for the nearest of those days.
+  // A jump to a distant date abandons whatever is still being fetched around the old one.
+  public synchronized void prefetch(@NonNull Date date) {
+    if (lastPrefetchDate != null) {
+      long step = Math.round((double) (date.getTime() - lastPrefetchDate.getTime()) / DAY_MILLIS);
+      if (Math.abs(step) > PREFETCH_JUMP_DAYS) {
+        prefetching.clear();
+        direction = 0;
+      } else if (step != 0) {
+        direction = Long.signum(step);
+      }
+    }
+    lastPrefetchDate = date;
+    ConnectivityManager manager =
+        (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    boolean metered;
+    if (VERSION.SDK_INT >= VERSION_CODES.M) {
+      NetworkCapabilities capabilities = manager.getNetworkCapabilities(manager.getActiveNetwork());
+      if (capabilities == null
+          || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+        return;
+      }
+      metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+    } else {
+      // No active network to ask about before M; without a connection, prefetches just fail.
+      metered = manager.isActiveNetworkMetered();
+    }
+    int reach = metered ? BuildConfig.PREFETCH_DAYS_METERED : BuildConfig.PREFETCH_DAYS;
+    int imageReach = metered ? BuildConfig.PREFETCH_IMAGES_METERED : BuildConfig.PREFETCH_IMAGES;
+    int trailing = (direction == 0) ? reach : Math.max(1, reach / 3);
+    int daysBefore = (direction > 0) ? trailing : reach;
+    int daysAfter = (direction < 0) ? trailing : reach;
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(date);
+    calendar.add(Calendar.DAY_OF_MONTH, -daysBefore);
+    Date startDate = calendar.getTime();
+    calendar.setTime(date);
+    calendar.add(Calendar.DAY_OF_MONTH, daysAfter);
+    Date latestDate = getLatestDate();
+    Date endDate = calendar.getTime().after(latestDate) ? latestDate : calendar.getTime();
+    List<Completable> images = new LinkedList<>();
+    for (int offset = 1; offset <= imageReach; offset++) {
+      if (direction >= 0) {
+        images.add(prefetchImage(date, offset, endDate));
+      }
+      if (direction <= 0) {
+        images.add(prefetchImage(date, -offset, endDate));
+      }
+    }
+    DisposableCompletableObserver observer = new DisposableCompletableObserver() {
+      @Override
+      public void onComplete() {
+        prefetching.delete(this);
+      }
+
+      @Override
+      public void onError(Throwable e) {
+        prefetching.delete(this);
+      }
+    };
+    prefetching.add(observer);
+    get(startDate, endDate)
+        // A chunk dropped from the prefetch queue still leaves images for the days already stored.
+        .onErrorComplete()
+        .andThen(Completable.concat(images))
+        .subscribe(observer);
+  }
+
+  private Completable prefetchImage(Date date, int offset, Date endDate) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(date);
+    calendar.add(Calendar.DAY_OF_MONTH, offset);
+    if (EpochDayConverters.fromDate(calendar.getTime()) > EpochDayConverters.fromDate(endDate)) {
+      return Completable.complete();
+    }
+    // Only days the metadata prefetch managed to store; a miss here isn't worth a request.
+    return database.getApodDao().select(calendar.getTime())
+        .subscribeOn(Schedulers.io())
+        .filter((apod) -> apod.getMediaType() == MediaType.IMAGE)
+        .flatMapSingleElement((apod) -> getImage(apod, NetworkPriority.PREFETCH))
+        .ignoreElement()
+        .onErrorComplete();
+  }
+
+  // Small copy of the image, decoded once at (about) the list's thumbnail size and cached apart
+  // from the full images.
+  public Single<String> getThumbnail(@NonNull ApodSummary apod) {
+    String resolved = resolvedThumbnails.get(apod.getId());
+    if (resolved != null) {
+      return Single.just(resolved);
+    }
+    String key = (apod.getMediaType() == MediaType.IMAGE)
+        ? getCacheKey(apod.getDate(), apod.getUrl(), LOCAL_FILENAME_FORMAT)
+        : null;
+    if (key == null) {
+      return Single.just(apod.getUrl());
+    }
+    return Maybe.fromCallable(() -> {
+      File file = thumbnailCache.get(key);
+      return (file != null) ? file.toURI().toString() : null;
+    })
+        .subscribeOn(Schedulers.io())
+        .switchIfEmpty(
+            getImage(apod.getId(), apod.getDate(), apod.getMediaType(), apod.getUrl(),
+                NetworkPriority.THUMBNAIL)
+                // Decoding is CPU work; don't hold a network thread for it.
+                .observeOn(Schedulers.computation())
+                .map((path) -> createThumbnail(key, path))
+        )
+        .doOnSuccess((path) -> remember(resolvedThumbnails, apod.getId(), path));
   }
 
   public Completable downloadImage(@NonNull Apod apod) {
+    return saveImage(apod).ignoreElement();
+  }
+
+  // Saves the image to MediaStore; returns the number of bytes written.
+  public Single<Long> saveImage(@NonNull Apod apod) {
     if (apod.getMediaType() != MediaType.IMAGE) {
       throw new IllegalArgumentException();
     }
-    String url = (apod.getHdUrl() != null) ? apod.getHdUrl() : apod.getHdUrl();
+    String url = getSaveUrl(apod);
+    String name = getMediaName(apod);
+    if (url.equals(apod.getUrl())) {
+      // With no separate HD file, the copy getImage caches is the one being asked for; joining its
+      // request means never writing the partial file it may be resuming.
+      return getImage(apod, NetworkPriority.DOWNLOAD)
+          .observeOn(Schedulers.io())
+          .flatMap((path) -> path.startsWith(FILE_SCHEME)
+              ? Single.fromCallable(() -> save(new File(URI.create(path)), url, name))
+              : downloadStream(url, name));
+    }
+    String key = getCacheKey(apod.getDate(), url, HD_FILENAME_FORMAT);
+    if (key == null) {
+      return downloadStream(url, name);
+    }
+    return Maybe.fromCallable(() -> imageCache.get(key))
+        .subscribeOn(Schedulers.io())
+        // Only a missing file goes to the network: pulled into the cache in parallel ranges, in a
+        // partial file of this download's own, so two saves of one image can't interleave.
+        .switchIfEmpty(Single.defer(() -> {
+          File partial = imageCache.createPartialFile(key);
+          return downloader.download(url, partial)
+              .andThen(Single.fromCallable(() -> {
+                imageCache.commit(key, partial);
+                return imageCache.getFile(key);
+              }));
+        }))
+        .observeOn(Schedulers.io())
+        .map((file) -> save(file, url, name));
+  }
+
+  // Display name the image is saved to MediaStore under: the date and the file name from the URL
+  // (or the title, if the URL has none). The same every time for one APoD, and never shared by two.
+  @NonNull
+  public String getMediaName(@NonNull Apod apod) {
+    String name = getCacheKey(apod.getDate(), getSaveUrl(apod), LOCAL_FILENAME_FORMAT);
+    return (name != null)
+        ? name
+        : String.format(LOCAL_FILENAME_FORMAT, apod.getDate(), apod.getTitle());
+  }
+
+  private String getSaveUrl(@NonNull Apod apod) {
+    return (apod.getHdUrl() != null) ? apod.getHdUrl() : apod.getUrl();
+  }
+
+  // Hands a cached file to a new MediaStore record, file to file.
+  private long save(@NonNull File file, @NonNull String url, @NonNull String name)
+      throws IOException {
+    ContentResolver resolver = context.getContentResolver();
+    Uri uri = getMediaUri(resolver, url, name);
+    try {
+      return copy(file, resolver, uri);
+    } catch (IOException ex) {
+      resolver.delete(uri, null, null);
+      throw ex;
+    }
+  }
+
+  // Single stream from NASA straight into a new MediaStore record.
+  private Single<Long> downloadStream(@NonNull String url, @NonNull String name) {
     return nasa.getFile(url)
-        .subscribeOn(Schedulers.from(networkPool))
+        .subscribeOn(NetworkPriority.DOWNLOAD.getScheduler())
         .map((body) -> {
           ContentResolver resolver = context.getContentResolver();
-          Uri uri = getMediaUri(resolver, url, apod.getTitle());
-          try (
-              InputStream input = body.byteStream();
-              OutputStream output = resolver.openOutputStream(uri);
-              ) {
+          Uri uri = getMediaUri(resolver, url, name);
+          try (BufferedSource source = body.source()) {
             // Invokes.
-            copy(input, output);
+            return copy(source, resolver, uri);
           } catch (IOException ex) {
             resolver.delete(uri, null, null);
             throw ex;
           }
-          return true;
-        })
-        .ignoreElement();
+        });
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  // Writes out buffered views now; called when the UI stops and when memory is tight.
+  public void flushAccesses() {
+    List<Access> batch;
+    synchronized (pendingAccesses) {
+      if (scheduledFlush != null) {
+        scheduledFlush.dispose();
+        scheduledFlush = null;
+      }
+      // Rows on their way to the database can't take any more views.
+      recentAccesses.clear();
+      if (pendingAccesses.isEmpty()) {
+        return;
+      }
+      batch = new ArrayList<>(pendingAccesses);
+      pendingAccesses.clear();
+    }
+    database.getAccessDao().insert(batch)
+        .subscribeOn(Schedulers.io())
+        // View counts are best effort; a batch that fails (e.g. its APoD was deleted) is dropped,
+        // but not without a trace.
+        .subscribe((ids) -> {}, (throwable) -> Log.e(TAG, ACCESS_FLUSH_FAILURE, throwable));
+  }
+
+  // Folds Access rows older than the retention age into per-day AccessRollup rows, a bounded
+  // batch per transaction so writers (and the history list's reloads) get the database between
+  // batches.
+  public Completable compactAccesses() {
+    return Completable.fromAction(() -> {
+      AccessDao dao = database.getAccessDao();
+      long cutoff = System.currentTimeMillis()
+          - TimeUnit.DAYS.toMillis(BuildConfig.ACCESS_RETENTION_DAYS);
+      //noinspection StatementWithEmptyBody
+      while (dao.compactBatch(cutoff, COMPACTION_BATCH_SIZE)) {
+      }
+    })
+        .subscribeOn(Schedulers.io());
+  }
+
+  // Callers asking for the same date while a request is out share that request's Single. Dates are
+  // keyed by day: the date picker passes a time of day, the history list local midnight.
+  private Single<Apod> fetch(Date date) {
+    Long day = EpochDayConverters.fromDate(date);
+    // Only this request's own entry is removed; one started after it finished stays put.
+    AtomicReference<Single<Apod>> self = new AtomicReference<>();
+    Single<Apod> request = nasa.get(BuildConfig.API_KEY, formatDate(date))
+        // Does on different thread. Pool of threads for requests the user is waiting on.
+        .subscribeOn(NetworkPriority.INTERACTIVE.getScheduler())
+        .flatMap(this::upsert)
+        .doFinally(() -> inFlight.remove(day, self.get()))
+        // Replays the one result to every subscriber.
+        .cache();
+    self.set(request);
+    Single<Apod> existing = inFlight.putIfAbsent(day, request);
+    if (existing != null) {
+      coalescedCount.incrementAndGet();
+      return existing;
+    }
+    missCount.incrementAndGet();
+    return request;
+  }
+
+  // Inserts, or (if a row for the date got there first) updates the existing row, keeping its id.
+  private Single<Apod> upsert(Apod apod) {
+    ApodDao dao = database.getApodDao();
+    return dao.insertOrIgnore(apod)
+        .flatMap((id) -> {
+          if (id > 0) {
+            apod.setId(id);
+            return Single.just(apod);
+          }
+          return dao.select(apod.getDate())
+              .toSingle()
+              .flatMap((existing) -> {
+                apod.setId(existing.getId());
+                return dao.update(apod)
+                    .map((count) -> apod);
+              });
+        });
+  }
+
+  private Completable getRange(Date startDate, Date endDate, int days,
+      NetworkPriority priority) {
+    ApodDao dao = database.getApodDao();
+    return dao.selectDates(startDate, endDate)
+        .subscribeOn(Schedulers.io())
+        .flatMapCompletable((cached) -> {
+          // Every day in this chunk is already stored; don't touch the network.
+          if (cached.size() >= days) {
+            return Completable.complete();
+          }
+          Set<Date> cachedDates = new HashSet<>(cached);
+          return priority.submit(
+              nasa.get(BuildConfig.API_KEY, formatDate(startDate), formatDate(endDate)))
+              .flatMapPublisher((apods) -> apods)
+              .filter((apod) -> !cachedDates.contains(apod.getDate()))
+              // Each batch is one @Insert of a collection, so one transaction; the next batch isn't
+              // parsed until this one is written. A day stored since the dates were read (e.g. by
+              // the screen) is left alone rather than failing the batch.
+              .buffer(INSERT_BATCH_SIZE)
+              .concatMapCompletable((batch) -> dao.insertOrIgnore(batch).ignoreElement());
+        });
+  }
+
+  // Today's date where APoD is published (US Eastern time), as local midnight like every APoD date.
+  // East of there, local today has no APoD yet for part of each day.
+  private static Date getLatestDate() {
+    Calendar published = Calendar.getInstance(TimeZone.getTimeZone(APOD_TIME_ZONE));
+    Calendar local = Calendar.getInstance();
+    local.clear();
+    local.set(published.get(Calendar.YEAR), published.get(Calendar.MONTH),
+        published.get(Calendar.DAY_OF_MONTH));
+    return local.getTime();
+  }
+
+  // SimpleDateFormat isn't thread-safe, and requests are built on several threads at once; the
+  // shared ApodService.DATE_FORMATTER is left to the UI thread.
+  private static String formatDate(Date date) {
+    @SuppressLint("SimpleDateFormat")
+    DateFormat formatter = new SimpleDateFormat(ApodService.DATE_FORMAT);
+    return formatter.format(date);
   }
 
   private Uri getMediaUri(@NonNull ContentResolver resolver, @NonNull String sourceUrl,
-      @NonNull String title) throws IOException {
+      @NonNull String name) throws IOException {
     String extension = MimeTypeMap.getFileExtensionFromUrl(sourceUrl);
     MimeTypeMap map = MimeTypeMap.getSingleton();
     String mimeType = map.getMimeTypeFromExtension(extension);
     ContentValues contentValues = new ContentValues();
-    contentValues.put(MediaColumns.DISPLAY_NAME, title);
+    contentValues.put(MediaColumns.DISPLAY_NAME, name);
     contentValues.put(MediaColumns.MIME_TYPE, mimeType);
     if (VERSION.SDK_INT >= VERSION_CODES.Q) {
       contentValues.put(MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_PICTURES);
@@ -167,62 +701,269 @@ public class ApodRepository {
     return uri;
   }
 
-  private long copy(InputStream input, OutputStream output) throws IOException {
-    byte[] buffer = new byte[BUFFER_SIZE];
-    long totalBytes = 0;
-    int bytesRead;
-    do {
-      if ((bytesRead = input.read(buffer)) > 0) {
-        output.write(buffer, 0, bytesRead);
-        totalBytes += bytesRead;
+  // Network to file: Okio moves its pooled segments straight into the sink, with no byte[] of ours.
+  private long copy(BufferedSource source, File file, boolean append) throws IOException {
+    try (BufferedSink sink = Okio.buffer(append ? Okio.appendingSink(file) : Okio.sink(file))) {
+      return source.readAll(sink);
+    }
+  }
+
+  // Network to MediaStore record.
+  private long copy(BufferedSource source, ContentResolver resolver, Uri uri) throws IOException {
+    OutputStream output = resolver.openOutputStream(uri);
+    if (output == null) {
+      throw new IOException(MEDIA_RECORD_FAILURE);
+    }
+    try (BufferedSink sink = Okio.buffer(Okio.sink(output))) {
+      return source.readAll(sink);
+    }
+  }
+
+  // File to MediaStore record: the kernel copies between the two descriptors (sendfile, where
+  // available), without the data passing through the Java heap. A transfer that moves nothing
+  // (e.g. the file was truncated underneath us) fails rather than being retried forever.
+  @VisibleForTesting
+  static long copy(File file, ContentResolver resolver, Uri uri) throws IOException {
+    try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "w")) {
+      if (descriptor == null) {
+        throw new IOException(MEDIA_RECORD_FAILURE);
       }
-    } while (bytesRead >= 0);
-    output.flush();
-    return totalBytes;
+      try (
+          FileChannel input = new FileInputStream(file).getChannel();
+          FileChannel output = new FileOutputStream(descriptor.getFileDescriptor()).getChannel();
+          ) {
+        long size = input.size();
+        long position = 0;
+        while (position < size) {
+          long transferred = input.transferTo(position, size - position, output);
+          if (transferred <= 0) {
+            throw new IOException(String.format(COPY_STALL_FAILURE_FORMAT, position, size));
+          }
+          position += transferred;
+        }
+        return position;
+      }
+    }
   }
 
-  // Download method.
-  private String downloadCache(ResponseBody body, File file) throws IOException {
-    try (
-        // Requesting image, recieving bytes.
-        InputStream input = body.byteStream();
-        // Opens file for output. Writes bytes to.
-        OutputStream output = new FileOutputStream(file);
-        ) {
-      // Read bytes from NASA, writes to server. -1 and done.
-      copy(input, output);
-      return file.toURI().toString();
+  // Only local files are remembered; a remote URL means caching failed, and should be retried.
+  private void remember(LruCache<Long, String> resolved, long id, String path) {
+    if (path.startsWith(FILE_SCHEME)) {
+      resolved.put(id, path);
     }
   }
 
-    // Construct file name from apod object
-    private File getFile (@NonNull Apod apod){
-      String url = apod.getUrl();
-      File file = null;
+  // Drops remembered paths pointing at a cache entry that was just written, removed or evicted.
+  private void forget(LruCache<Long, String> resolved, DiskCache cache, String key) {
+    String path = cache.getFile(key).toURI().toString();
+    for (Map.Entry<Long, String> entry : resolved.snapshot().entrySet()) {
+      if (path.equals(entry.getValue())) {
+        resolved.remove(entry.getKey());
+      }
+    }
+  }
+
+  private String createThumbnail(String key, String path) throws IOException {
+    if (!path.startsWith(FILE_SCHEME)) {
+      // Image isn't cached locally (download failed); let the caller use the remote URL.
+      return path;
+    }
+    String source = new File(URI.create(path)).getPath();
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    // First pass reads only the dimensions.
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFile(source, options);
+    if (options.outWidth <= 0 || options.outHeight <= 0) {
+      return path;
+    }
+    options.inSampleSize = getSampleSize(options.outWidth, options.outHeight);
+    options.inJustDecodeBounds = false;
+    Bitmap bitmap = BitmapFactory.decodeFile(source, options);
+    if (bitmap == null) {
+      return path;
+    }
+    // Subsampling only gets within a factor of 2 of the target; finish with one scaling pass.
+    float scale = Math.max((float) thumbnailWidth / bitmap.getWidth(),
+        (float) thumbnailHeight / bitmap.getHeight());
+    if (scale < 1) {
+      Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+          Math.round(bitmap.getHeight() * scale), true);
+      bitmap.recycle();
+      bitmap = scaled;
+    }
+    // getThumbnail isn't coalesced, so a row bound twice can write the same thumbnail twice; each
+    // writer gets its own partial file, and whichever commits last wins with a complete one.
+    File partial = thumbnailCache.createPartialFile(key);
+    boolean written;
+    try (OutputStream output = new FileOutputStream(partial)) {
+      written = bitmap.compress(CompressFormat.JPEG, THUMBNAIL_QUALITY, output);
+    } catch (IOException ex) {
+      //noinspection ResultOfMethodCallIgnored
+      partial.delete();
+      throw ex;
+    } finally {
+      bitmap.recycle();
+    }
+    if (!written) {
+      //noinspection ResultOfMethodCallIgnored
+      partial.delete();
+      return path;
+    }
+    thumbnailCache.commit(key, partial);
+    return thumbnailCache.getFile(key).toURI().toString();
+  }
+
+  // Largest power of 2 that still leaves the decoded image at least as big as the thumbnail.
+  private int getSampleSize(int width, int height) {
+    int sampleSize = 1;
+    while (width / (sampleSize * 2) >= thumbnailWidth
+        && height / (sampleSize * 2) >= thumbnailHeight) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  // Download method. Writes to the partial file (appending, if the server honored our Range), checks
+  // what arrived, and only then renames it into the cache.
+  private String downloadCache(Response<ResponseBody> response, String key, long offset)
+      throws IOException {
+    File partial = imageCache.getPartialFile(key);
+    ResponseBody body = response.body();
+    if (!response.isSuccessful() || body == null) {
+      // Releases the connection the error page would otherwise hold.
+      ResponseBody errorBody = response.errorBody();
+      if (errorBody != null) {
+        errorBody.close();
+      }
+      if (response.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+        // Whatever we have doesn't match the file any more; start over next time.
+        //noinspection ResultOfMethodCallIgnored
+        partial.delete();
+      }
+      throw new IOException(String.format(DOWNLOAD_FAILURE_FORMAT, response.code()));
+    }
+    okhttp3.MediaType contentType = body.contentType();
+    if (contentType == null || !IMAGE_CONTENT_TYPE.equals(contentType.type())) {
+      body.close();
+      //noinspection ResultOfMethodCallIgnored
+      partial.delete();
+      throw new IOException(String.format(CONTENT_TYPE_FAILURE_FORMAT, contentType));
+    }
+    boolean append = false;
+    long expectedLength = body.contentLength();
+    if (response.code() == HTTP_PARTIAL_CONTENT) {
+      Matcher matcher = CONTENT_RANGE_PATTERN.matcher(
+          String.valueOf(response.headers().get(CONTENT_RANGE_HEADER)));
+      if (!matcher.matches() || Long.parseLong(matcher.group(1)) != offset) {
+        body.close();
+        //noinspection ResultOfMethodCallIgnored
+        partial.delete();
+        throw new IOException(String.format(DOWNLOAD_FAILURE_FORMAT, response.code()));
+      }
+      append = true;
+      expectedLength = (matcher.group(2) != null) ? Long.parseLong(matcher.group(2)) : -1;
+    }
+    // Requesting image, recieving bytes, writing to file. If the connection drops, what we have stays.
+    try (BufferedSource source = body.source()) {
+      copy(source, partial, append);
+    }
+    if (expectedLength >= 0 && partial.length() != expectedLength) {
+      //noinspection ResultOfMethodCallIgnored
+      partial.delete();
+      throw new IOException(String.format(LENGTH_FAILURE_FORMAT, partial.length(), expectedLength));
+    }
+    imageCache.commit(key);
+    return imageCache.getFile(key).toURI().toString();
+  }
+
+    private String getCacheKey (@NonNull Date date, @NonNull String url, @NonNull String format){
+      String key = null;
       Matcher matcher = URL_FILENAME_PATTERN.matcher(url);
       if (matcher.matches()) {
         // One is date and file name matched, two parameters. Catcher group 1. getdate is param 1, matcher is 2.
-        String filename = String.format(LOCAL_FILENAME_FORMAT, apod.getDate(), matcher.group(1));
-        // Stores this, external storage. Private to app. Stores in internal storage if no space.
-        // Stores pictures, directory.
-        File directory = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
-        // Checks if unavailable, stores elsewhere. If directory not equal to media mounted, then new directory.
-        if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState(directory))) {
-          // Internal storage.
-          directory = context.getFilesDir();
-        }
-        file = new File(directory, filename);
+        key = String.format(format, date, matcher.group(1));
+      }
+      return key;
+    }
+
+    private File getCacheDirectory () {
+      // Stores this, external storage. Private to app. Stores in internal storage if no space.
+      // Stores pictures, directory.
+      File directory = context.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+      // Checks if unavailable, stores elsewhere. If directory not equal to media mounted, then new directory.
+      if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState(directory))) {
+        // Internal storage.
+        directory = context.getFilesDir();
       }
-      return file;
+      return directory;
     }
 
+    // Views are buffered and written in batches: one transaction (and one invalidation of the
+    // history list) per batch instead of per view. A repeat view of an APoD within a minute of the
+    // last one, while that one's row is still waiting to be written, is folded into the row.
     private void insertAccess (Apod apod){
-      AccessDao accessDao = database.getAccessDao();
-      Access access = new Access();
-      access.setApodId(apod.getId());
-      accessDao.insert(access)
-          .subscribeOn(Schedulers.io())
-          .subscribe(/* TODO Handle error result */);
+      long now = System.currentTimeMillis();
+      synchronized (pendingAccesses) {
+        Access last = recentAccesses.get(apod.getId());
+        if (last != null && now - last.getTimestamp() < ACCESS_MERGE_MILLIS) {
+          last.setViews(last.getViews() + 1);
+          last.setTimestamp(now);
+          return;
+        }
+        Access access = new Access();
+        access.setApodId(apod.getId());
+        access.setTimestamp(now);
+        recentAccesses.put(apod.getId(), access);
+        pendingAccesses.add(access);
+        if (pendingAccesses.size() >= ACCESS_BATCH_SIZE) {
+          flushAccesses();
+        } else if (scheduledFlush == null) {
+          scheduledFlush = Completable.timer(ACCESS_FLUSH_DELAY, TimeUnit.SECONDS, Schedulers.io())
+              .subscribe(this::flushAccesses);
+        }
+      }
+    }
+
+    // One image download, shared by everyone asking for the file while it's out. It runs on the pool
+    // of the most urgent class asking for it before it starts: a caller more urgent than the rest
+    // queues another attempt on its own pool, and whichever attempt gets a thread first does the
+    // work. A screen waiting on a file that a prefetch already asked for isn't stuck behind it.
+    private static class ImageRequest {
+
+      private final BehaviorSubject<NetworkPriority> priorities;
+
+      private Single<String> result;
+
+      private ImageRequest(NetworkPriority priority) {
+        priorities = BehaviorSubject.createDefault(priority);
+      }
+
+      private Single<String> join(NetworkPriority priority) {
+        synchronized (priorities) {
+          // Lower ordinal is more urgent.
+          //noinspection ConstantConditions
+          if (priority.ordinal() < priorities.getValue().ordinal()) {
+            priorities.onNext(priority);
+          }
+        }
+        return result;
+      }
+
+      private <T> Single<T> start(Single<T> work) {
+        AtomicBoolean claimed = new AtomicBoolean();
+        Single<T> attempt = Single.defer(() ->
+            claimed.compareAndSet(false, true) ? work : Single.<T>never());
+        return priorities
+            .flatMapSingle((priority) -> priority.submit(attempt)
+                // Dropped from its queue after a more urgent attempt was queued: that one runs.
+                .onErrorResumeNext((throwable) ->
+                    (throwable instanceof RejectedExecutionException
+                        && priorities.getValue() != priority)
+                        ? Single.never()
+                        : Single.error(throwable)))
+            .firstOrError();
+      }
+
     }
 
     private static class InstanceHolder {
@@ -232,5 +973,3 @@ public class ApodRepository {
     }
 
   }
-
-
@@ -0,0 +1,224 @@
+package edu.cnm.deepdive.nasaapod.model.repository;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.MediaStore.Images.Media;
+import android.provider.MediaStore.MediaColumns;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import edu.cnm.deepdive.nasaapod.BuildConfig;
+import edu.cnm.deepdive.nasaapod.model.dao.ApodDao;
+import edu.cnm.deepdive.nasaapod.model.dao.DownloadJobDao;
+import edu.cnm.deepdive.nasaapod.model.entity.Apod;
+import edu.cnm.deepdive.nasaapod.model.entity.Apod.MediaType;
+import edu.cnm.deepdive.nasaapod.model.entity.DownloadJob;
+import edu.cnm.deepdive.nasaapod.model.entity.DownloadJob.Status;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase;
+import edu.cnm.deepdive.nasaapod.service.NetworkPriority;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Saves whole date ranges of APoD images to MediaStore. Jobs live in the DownloadJob table, so the
+// queue survives process death; the runner belongs to this singleton rather than to any screen,
+// so leaving the app doesn't cancel a download partway through.
+public class DownloadQueueRepository {
+
+  private static final String TAG = DownloadQueueRepository.class.getSimpleName();
+  private static final int MAX_ATTEMPTS = 3;
+  // Doubled for each attempt already made.
+  private static final long RETRY_DELAY_SECONDS = 30;
+  private static final String DISPLAY_NAME_SELECTION = MediaColumns.DISPLAY_NAME + " = ?";
+  private static final String RESUME_FAILURE = "Unable to resume download queue.";
+
+  private final DownloadJobDao dao;
+  private final ApodDao apodDao;
+  private final ApodRepository apodRepository;
+  private final AtomicLong totalBytes;
+  private final AtomicLong totalMillis;
+
+  private Disposable runner;
+  private boolean restart;
+  private long runningSince;
+
+  private static Application context;
+
+  private DownloadQueueRepository() {
+    if (context == null) {
+      throw new IllegalStateException();
+    }
+    dao = ApodDatabase.getInstance().getDownloadJobDao();
+    apodDao = ApodDatabase.getInstance().getApodDao();
+    apodRepository = ApodRepository.getInstance();
+    totalBytes = new AtomicLong();
+    totalMillis = new AtomicLong();
+  }
+
+  public static void setContext(Application context) {
+    DownloadQueueRepository.context = context;
+  }
+
+  public static DownloadQueueRepository getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  // Queues every date from startDate to endDate; returns how many weren't already queued.
+  public Single<Integer> enqueue(@NonNull Date startDate, @NonNull Date endDate) {
+    List<DownloadJob> jobs = new LinkedList<>();
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(startDate);
+    while (!calendar.getTime().after(endDate)) {
+      DownloadJob job = new DownloadJob();
+      job.setDate(calendar.getTime());
+      jobs.add(job);
+      calendar.add(Calendar.DAY_OF_MONTH, 1);
+    }
+    return dao.insert(jobs)
+        .subscribeOn(Schedulers.io())
+        .map((ids) -> {
+          int added = 0;
+          for (long id : ids) {
+            if (id > 0) {
+              added++;
+            }
+          }
+          return added;
+        })
+        .doAfterSuccess((added) -> start());
+  }
+
+  // Picks up whatever was queued (or interrupted) in an earlier process.
+  public void resume() {
+    dao.updateStatus(Status.RUNNING, Status.PENDING)
+        .subscribeOn(Schedulers.io())
+        .subscribe((count) -> start(), (throwable) -> Log.e(TAG, RESUME_FAILURE, throwable));
+  }
+
+  public LiveData<Integer> getPendingCount() {
+    return dao.count(Status.PENDING);
+  }
+
+  public long getTotalBytes() {
+    return totalBytes.get();
+  }
+
+  // Bytes per second of wall-clock time the queue has spent running. Jobs run in parallel, so
+  // summing each one's own time would undercount it.
+  public long getThroughput() {
+    long millis = totalMillis.get();
+    synchronized (this) {
+      if (runner != null) {
+        millis += System.currentTimeMillis() - runningSince;
+      }
+    }
+    return (millis > 0) ? totalBytes.get() * 1000 / millis : 0;
+  }
+
+  private synchronized void start() {
+    if (runner != null) {
+      // Already running; go around again when it's done, to pick up the new jobs.
+      restart = true;
+      return;
+    }
+    runningSince = System.currentTimeMillis();
+    runner = dao.select(Status.PENDING)
+        .subscribeOn(Schedulers.io())
+        .flatMapCompletable((jobs) -> fetchMetadata(jobs)
+            .andThen(Flowable.fromIterable(jobs))
+            .flatMapCompletable(this::process, true, BuildConfig.DOWNLOAD_QUEUE_PARALLELISM))
+        .subscribe(this::finished, (throwable) -> finished());
+  }
+
+  private synchronized void finished() {
+    totalMillis.addAndGet(System.currentTimeMillis() - runningSince);
+    runner = null;
+    if (restart) {
+      restart = false;
+      start();
+    }
+  }
+
+  // The metadata for a pass's jobs (oldest date first), in range requests at download priority;
+  // one request per day would spend the pool and quota share kept for the screen. Days it doesn't
+  // manage to store fail their jobs, which are retried.
+  private Completable fetchMetadata(List<DownloadJob> jobs) {
+    if (jobs.isEmpty()) {
+      return Completable.complete();
+    }
+    return apodRepository.get(jobs.get(0).getDate(), jobs.get(jobs.size() - 1).getDate(),
+        NetworkPriority.DOWNLOAD)
+        .onErrorComplete();
+  }
+
+  private Completable process(DownloadJob job) {
+    job.setStatus(Status.RUNNING);
+    job.setAttempts(job.getAttempts() + 1);
+    return dao.update(job)
+        .flatMap((count) -> apodDao.select(job.getDate()).toSingle())
+        .flatMap((apod) -> {
+          if (apod.getMediaType() != MediaType.IMAGE || isSaved(apod)) {
+            job.setStatus(Status.SKIPPED);
+            return Single.just(0L);
+          }
+          return apodRepository.saveImage(apod)
+              .doOnSuccess((bytes) -> {
+                totalBytes.addAndGet(bytes);
+                job.setStatus(Status.DONE);
+              });
+        })
+        .map((bytes) -> {
+          job.setBytes(bytes);
+          return job;
+        })
+        .onErrorReturn((throwable) -> {
+          job.setStatus((job.getAttempts() < MAX_ATTEMPTS) ? Status.PENDING : Status.FAILED);
+          return job;
+        })
+        .flatMap(dao::update)
+        .doOnSuccess((count) -> {
+          if (job.getStatus() == Status.PENDING) {
+            retry(job.getAttempts());
+          }
+        })
+        .ignoreElement()
+        .onErrorComplete();
+  }
+
+  // Back in the queue; this pass has already read it, so a later one picks it up. That pass waits
+  // longer after each attempt, so a job failing for want of a connection doesn't use up its
+  // attempts in moments.
+  private void retry(int attempts) {
+    Completable.timer(RETRY_DELAY_SECONDS << (attempts - 1), TimeUnit.SECONDS)
+        .subscribe(this::start);
+  }
+
+  // Whether MediaStore already has an image saved under this APoD's own display name.
+  private boolean isSaved(Apod apod) {
+    ContentResolver resolver = context.getContentResolver();
+    String[] projection = {MediaColumns._ID};
+    String[] args = {apodRepository.getMediaName(apod)};
+    try (
+        Cursor cursor = resolver.query(
+            Media.EXTERNAL_CONTENT_URI, projection, DISPLAY_NAME_SELECTION, args, null)
+    ) {
+      return cursor != null && cursor.moveToFirst();
+    }
+  }
+
+  private static class InstanceHolder {
+
+    private static final DownloadQueueRepository INSTANCE = new DownloadQueueRepository();
+
+  }
+
+}
@@ -0,0 +1,128 @@
+package edu.cnm.deepdive.nasaapod.model.repository;
+
+import android.annotation.SuppressLint;
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.ItemKeyedDataSource;
+import androidx.room.InvalidationTracker;
+import edu.cnm.deepdive.nasaapod.model.dao.ApodDao;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
+import edu.cnm.deepdive.nasaapod.service.ApodDatabase;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// History pages keyed on date, newest first. Each page is a range query on the date index that
+// starts from the edge of the last one, so a page deep in the archive costs what the first does.
+class HistoryDataSource extends ItemKeyedDataSource<Date, ApodSummary> {
+
+  private static final String[] TABLES = {"Apod", "AccessStats"};
+
+  private final ApodDatabase database;
+
+  private HistoryDataSource(ApodDatabase database) {
+    this.database = database;
+  }
+
+  @Override
+  public void loadInitial(@NonNull LoadInitialParams<Date> params,
+      @NonNull LoadInitialCallback<ApodSummary> callback) {
+    ApodDao dao = database.getApodDao();
+    Date key = params.requestedInitialKey;
+    List<ApodSummary> apods;
+    if (key == null) {
+      apods = dao.selectWithStats(params.requestedLoadSize);
+    } else {
+      // Reloading after a change: keep some of what was above the old position, so the list
+      // doesn't have to page back up before it can show it.
+      int newer = params.requestedLoadSize / 2;
+      apods = new ArrayList<>(dao.selectWithStatsAfter(key, newer));
+      Collections.reverse(apods);
+      apods.addAll(dao.selectWithStatsFrom(key, params.requestedLoadSize - newer));
+    }
+    callback.onResult(apods);
+  }
+
+  @Override
+  public void loadAfter(@NonNull LoadParams<Date> params,
+      @NonNull LoadCallback<ApodSummary> callback) {
+    ApodDao dao = database.getApodDao();
+    callback.onResult(dao.selectWithStatsBefore(params.key, params.requestedLoadSize));
+  }
+
+  @Override
+  public void loadBefore(@NonNull LoadParams<Date> params,
+      @NonNull LoadCallback<ApodSummary> callback) {
+    ApodDao dao = database.getApodDao();
+    List<ApodSummary> apods =
+        new ArrayList<>(dao.selectWithStatsAfter(params.key, params.requestedLoadSize));
+    Collections.reverse(apods);
+    callback.onResult(apods);
+  }
+
+  @NonNull
+  @Override
+  public Date getKey(@NonNull ApodSummary item) {
+    return item.getDate();
+  }
+
+  // Watches the tables for every data source it creates. Bursts of writes (batched views, a range
+  // prefetch) produce at most one reload per window, and none while the list isn't observed: a
+  // change made meanwhile is applied once, when it is observed again.
+  static class Factory extends DataSource.Factory<Date, ApodSummary> {
+
+    private final ApodDatabase database;
+    private final InvalidationTracker.Observer observer;
+    private final Subject<Set<String>> changes;
+    private HistoryDataSource current;
+    private boolean active;
+    private boolean stale;
+
+    @SuppressLint("CheckResult")
+    Factory(ApodDatabase database, long window) {
+      this.database = database;
+      changes = PublishSubject.<Set<String>>create().toSerialized();
+      observer = new InvalidationTracker.Observer(TABLES) {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+          changes.onNext(tables);
+        }
+      };
+      // Held weakly by the tracker; lives as long as this factory.
+      database.getInvalidationTracker().addWeakObserver(observer);
+      changes
+          .throttleLatest(window, TimeUnit.MILLISECONDS, true)
+          .subscribe((tables) -> invalidate());
+    }
+
+    @NonNull
+    @Override
+    public synchronized DataSource<Date, ApodSummary> create() {
+      current = new HistoryDataSource(database);
+      stale = false;
+      return current;
+    }
+
+    synchronized void setActive(boolean active) {
+      this.active = active;
+      if (active && stale) {
+        invalidate();
+      }
+    }
+
+    private synchronized void invalidate() {
+      if (active && current != null) {
+        current.invalidate();
+      } else {
+        stale = true;
+      }
+    }
+
+  }
+
+}
@@ -1,24 +1,43 @@
 package edu.cnm.deepdive.nasaapod.service;
 
 import android.app.Application;
+import android.database.Cursor;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverter;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import edu.cnm.deepdive.nasaapod.model.dao.AccessDao;
 import edu.cnm.deepdive.nasaapod.model.dao.ApodDao;
+import edu.cnm.deepdive.nasaapod.model.dao.DownloadJobDao;
 import edu.cnm.deepdive.nasaapod.model.entity.Access;
+import edu.cnm.deepdive.nasaapod.model.entity.AccessRollup;
+import edu.cnm.deepdive.nasaapod.model.entity.AccessStats;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod;
+import edu.cnm.deepdive.nasaapod.model.entity.ApodFts;
+import edu.cnm.deepdive.nasaapod.model.entity.DownloadJob;
 import edu.cnm.deepdive.nasaapod.service.ApodDatabase.Converters;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 @Database(
-    entities = {Apod.class, Access.class},
-    version = 1,
+    entities = {
+        Apod.class, ApodFts.class, Access.class, AccessStats.class, AccessRollup.class,
+        DownloadJob.class
+    },
+    version = 7,
     exportSchema = true
 )
-@TypeConverters({Converters.class, Apod.MediaType.class})
+@TypeConverters({Converters.class, Apod.MediaType.class, DownloadJob.Status.class})
 public abstract class ApodDatabase extends RoomDatabase {
 
   private static final String DB_NAME = "apod_db";
@@ -37,14 +56,199 @@ public abstract class ApodDatabase extends RoomDatabase {
 
   public abstract AccessDao getAccessDao();
 
+  public abstract DownloadJobDao getDownloadJobDao();
+
   private static class InstanceHolder {
 
     private static final ApodDatabase INSTANCE = Room.databaseBuilder(
         context, ApodDatabase.class, DB_NAME)
+        .addMigrations(Migrations.ALL)
+        .addCallback(new Callback() {
+          @Override
+          public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            // Room can't declare triggers; fresh installs get the same ones a migration adds.
+            db.execSQL(Migrations.ACCESS_STATS_TRIGGER);
+          }
+        })
         .build();
 
   }
 
+  @VisibleForTesting
+  static class Migrations {
+
+    // Westernmost offset toEpochDay assumes for a midnight not written in the device's zone.
+    private static final long WEST_ZONE_OFFSET_MILLIS = TimeUnit.HOURS.toMillis(10);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    static final Migration[] ALL = {
+        Migrations.MIGRATION_1_2, Migrations.MIGRATION_2_3, Migrations.MIGRATION_3_4,
+        Migrations.MIGRATION_4_5, Migrations.MIGRATION_5_6, Migrations.MIGRATION_6_7
+    };
+
+    // Each new Access row adds its views to its APoD's count, and bumps the last access time.
+    // Nothing is taken off when Access rows are compacted into AccessRollup, so the stats stay
+    // exact; deleting the APoD cascades to AccessStats as well.
+    static final String ACCESS_STATS_TRIGGER =
+        "CREATE TRIGGER IF NOT EXISTS `access_stats_insert` AFTER INSERT ON `Access` BEGIN "
+            + "INSERT OR IGNORE INTO `AccessStats` (`apod_id`, `access_count`, `last_access`) "
+            + "VALUES (NEW.`apod_id`, 0, NEW.`timestamp`); "
+            + "UPDATE `AccessStats` SET `access_count` = `access_count` + NEW.`views`, "
+            + "`last_access` = MAX(`last_access`, NEW.`timestamp`) "
+            + "WHERE `apod_id` = NEW.`apod_id`; "
+            + "END";
+
+    // The trigger as it was before Access rows had a view count; one row was one view.
+    static final String ACCESS_STATS_TRIGGER_V3 =
+        "CREATE TRIGGER IF NOT EXISTS `access_stats_insert` AFTER INSERT ON `Access` BEGIN "
+            + "INSERT OR IGNORE INTO `AccessStats` (`apod_id`, `access_count`, `last_access`) "
+            + "VALUES (NEW.`apod_id`, 0, NEW.`timestamp`); "
+            + "UPDATE `AccessStats` SET `access_count` = `access_count` + 1, "
+            + "`last_access` = MAX(`last_access`, NEW.`timestamp`) "
+            + "WHERE `apod_id` = NEW.`apod_id`; "
+            + "END";
+
+    // Adds the bulk download queue.
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+      @Override
+      public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `DownloadJob` ("
+            + "`download_job_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+            + "`date` INTEGER NOT NULL, `status` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, "
+            + "`bytes` INTEGER NOT NULL, `created` INTEGER NOT NULL)");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DownloadJob_date` "
+            + "ON `DownloadJob` (`date`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_DownloadJob_status` "
+            + "ON `DownloadJob` (`status`)");
+      }
+    };
+
+    // Adds per-APoD access statistics, filled from the existing Access rows.
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+      @Override
+      public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `AccessStats` (`apod_id` INTEGER NOT NULL, "
+            + "`access_count` INTEGER NOT NULL, `last_access` INTEGER NOT NULL, "
+            + "PRIMARY KEY(`apod_id`), FOREIGN KEY(`apod_id`) REFERENCES `Apod`(`apod_id`) "
+            + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+        db.execSQL("INSERT INTO `AccessStats` (`apod_id`, `access_count`, `last_access`) "
+            + "SELECT `apod_id`, COUNT(*), MAX(`timestamp`) FROM `Access` GROUP BY `apod_id`");
+        db.execSQL(ACCESS_STATS_TRIGGER_V3);
+      }
+    };
+
+    // Adds the full-text index, with the same sync triggers Room creates for a new database, and
+    // builds it from the existing rows.
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+      @Override
+      public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `ApodFts` USING FTS4("
+            + "`title` TEXT NOT NULL, `description` TEXT NOT NULL, content=`Apod`)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_ApodFts_BEFORE_UPDATE "
+            + "BEFORE UPDATE ON `Apod` BEGIN DELETE FROM `ApodFts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_ApodFts_BEFORE_DELETE "
+            + "BEFORE DELETE ON `Apod` BEGIN DELETE FROM `ApodFts` WHERE `docid`=OLD.`rowid`; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_ApodFts_AFTER_UPDATE "
+            + "AFTER UPDATE ON `Apod` BEGIN INSERT INTO `ApodFts`(`docid`, `title`, `description`) "
+            + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_ApodFts_AFTER_INSERT "
+            + "AFTER INSERT ON `Apod` BEGIN INSERT INTO `ApodFts`(`docid`, `title`, `description`) "
+            + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`description`); END");
+        db.execSQL("INSERT INTO `ApodFts`(`ApodFts`) VALUES('rebuild')");
+      }
+    };
+
+    // Rewrites APoD and download job dates from local midnight milliseconds to epoch days, and
+    // replaces the apod_id index on Access with one on (apod_id, timestamp). An APoD stored twice
+    // for the same day (under different time zones) is merged into its first row, views included.
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+      @Override
+      public void migrate(@NonNull SupportSQLiteDatabase db) {
+        Map<Long, Long> rows = new LinkedHashMap<>();
+        try (Cursor cursor = db.query("SELECT `apod_id`, `date` FROM `Apod` ORDER BY `apod_id`")) {
+          while (cursor.moveToNext()) {
+            rows.put(cursor.getLong(0), toEpochDay(cursor.getLong(1)));
+          }
+        }
+        Map<Long, Long> days = new HashMap<>();
+        boolean merged = false;
+        for (Map.Entry<Long, Long> row : rows.entrySet()) {
+          Long kept = days.get(row.getValue());
+          if (kept == null) {
+            days.put(row.getValue(), row.getKey());
+            db.execSQL("UPDATE `Apod` SET `date` = ? WHERE `apod_id` = ?",
+                new Object[]{row.getValue(), row.getKey()});
+          } else {
+            // Foreign keys aren't enforced during migration; move the children by hand.
+            db.execSQL("UPDATE `Access` SET `apod_id` = ? WHERE `apod_id` = ?",
+                new Object[]{kept, row.getKey()});
+            db.execSQL("DELETE FROM `Apod` WHERE `apod_id` = ?", new Object[]{row.getKey()});
+            merged = true;
+          }
+        }
+        if (merged) {
+          db.execSQL("DELETE FROM `AccessStats`");
+          db.execSQL("INSERT INTO `AccessStats` (`apod_id`, `access_count`, `last_access`) "
+              + "SELECT `apod_id`, COUNT(*), MAX(`timestamp`) FROM `Access` GROUP BY `apod_id`");
+        }
+        Map<Long, Long> jobs = new LinkedHashMap<>();
+        try (Cursor cursor = db.query("SELECT `download_job_id`, `date` FROM `DownloadJob`")) {
+          while (cursor.moveToNext()) {
+            jobs.put(cursor.getLong(0), toEpochDay(cursor.getLong(1)));
+          }
+        }
+        for (Map.Entry<Long, Long> job : jobs.entrySet()) {
+          // A job for a day already queued under another zone's midnight is the same job.
+          db.execSQL("UPDATE OR REPLACE `DownloadJob` SET `date` = ? WHERE `download_job_id` = ?",
+              new Object[]{job.getValue(), job.getKey()});
+        }
+        db.execSQL("DROP INDEX IF EXISTS `index_Access_apod_id`");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_Access_apod_id_timestamp` "
+            + "ON `Access` (`apod_id`, `timestamp`)");
+      }
+    };
+
+    // The day whose local midnight millis is, in whichever zone it was written. Most were written
+    // in the zone the device is in now, so a midnight there is taken as is. Otherwise it's read as
+    // a midnight somewhere from UTC-10 to UTC+13:45: a day's midnights span 26 hours (UTC-12 to
+    // UTC+14), so UTC-12, UTC-11 and UTC+14 share theirs with UTC+12, UTC+13 and UTC-10, and are
+    // taken for those busier zones.
+    static long toEpochDay(long millis) {
+      long local = millis + TimeZone.getDefault().getOffset(millis);
+      if (local % DAY_MILLIS == 0) {
+        return local / DAY_MILLIS;
+      }
+      // Rounded up; division truncates toward zero, which already rounds negatives up.
+      long shifted = millis - WEST_ZONE_OFFSET_MILLIS;
+      long day = shifted / DAY_MILLIS;
+      return (shifted % DAY_MILLIS > 0) ? day + 1 : day;
+    }
+
+    // Adds daily rollups of old Access rows.
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+      @Override
+      public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `AccessRollup` (`apod_id` INTEGER NOT NULL, "
+            + "`day` INTEGER NOT NULL, `access_count` INTEGER NOT NULL, "
+            + "`last_access` INTEGER NOT NULL, PRIMARY KEY(`apod_id`, `day`), "
+            + "FOREIGN KEY(`apod_id`) REFERENCES `Apod`(`apod_id`) "
+            + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+      }
+    };
+
+    // Gives Access rows a view count (every existing row was one view), and has the stats trigger
+    // add it up.
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+      @Override
+      public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("ALTER TABLE `Access` ADD COLUMN `views` INTEGER NOT NULL DEFAULT 1");
+        db.execSQL("DROP TRIGGER IF EXISTS `access_stats_insert`");
+        db.execSQL(ACCESS_STATS_TRIGGER);
+      }
+    };
+
+  }
+
   public static class Converters {
 
     @TypeConverter
@@ -59,5 +263,42 @@ public abstract class ApodDatabase extends RoomDatabase {
 
   }
 
+  // Calendar days (APoD dates) as days since 1970-01-01. The stored value names the day itself,
+  // whatever the device's time zone; in memory it's that day's local midnight, as parsed by
+  // ApodService.DATE_FORMATTER.
+  public static class EpochDayConverters {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @TypeConverter
+    public static Long fromDate(Date date) {
+      if (date == null) {
+        return null;
+      }
+      Calendar local = Calendar.getInstance();
+      local.setTime(date);
+      Calendar utc = Calendar.getInstance(UTC);
+      utc.clear();
+      utc.set(local.get(Calendar.YEAR), local.get(Calendar.MONTH),
+          local.get(Calendar.DAY_OF_MONTH));
+      return utc.getTimeInMillis() / DAY_MILLIS;
+    }
+
+    @TypeConverter
+    public static Date fromEpochDay(Long day) {
+      if (day == null) {
+        return null;
+      }
+      Calendar utc = Calendar.getInstance(UTC);
+      utc.setTimeInMillis(day * DAY_MILLIS);
+      Calendar local = Calendar.getInstance();
+      local.clear();
+      local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DAY_OF_MONTH));
+      return local.getTime();
+    }
+
+  }
+
 }
 
@@ -1,45 +1,99 @@
 package edu.cnm.deepdive.nasaapod.service;
 
 import android.annotation.SuppressLint;
+import android.app.Application;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import edu.cnm.deepdive.nasaapod.BuildConfig;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
 import okhttp3.logging.HttpLoggingInterceptor.Level;
+import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 import retrofit2.http.Url;
 
 public interface ApodService {
 
   String DATE_FORMAT = "yyyy-MM-dd";
+  String NO_STORE_HEADER = "Cache-Control: no-store";
 
   @SuppressLint("SimpleDateFormat")
   DateFormat DATE_FORMATTER = new SimpleDateFormat(DATE_FORMAT);
 
+  static void setContext(Application context) {
+    ContextHolder.context = context;
+  }
+
   static ApodService getInstance() {
     return InstanceHolder.INSTANCE;
   }
 
+  static RateLimitInterceptor getRateLimiter() {
+    return InstanceHolder.RATE_LIMITER;
+  }
+
+  static NetworkMetrics getMetrics() {
+    return InstanceHolder.METRICS;
+  }
+
   @GET("planetary/apod")
   Single<Apod> get(@Query("api_key") String apiKey, @Query("date") String date);
 
-  // Retrofit annotation, request pulls bytes of image
+  // Same endpoint, but returns every APoD from startDate to endDate (inclusive) in one response,
+  // parsed as it arrives.
+  @GET("planetary/apod")
+  Single<Flowable<Apod>> get(@Query("api_key") String apiKey,
+      @Query("start_date") String startDate, @Query("end_date") String endDate);
+
+  // Retrofit annotation, request pulls bytes of image. Streaming, so the body isn't buffered in memory.
+  // Files go to DiskCache, not the HTTP cache: multi-MB images would push out the metadata that's
+  // for, and it ignores Range, so a cached full response could answer a ranged request.
+  @Streaming
+  @Headers(NO_STORE_HEADER)
   @GET
   Single<ResponseBody> getFile(@Url String url);
 
+  // Headers only (length, range support) of a file, before deciding how to download it.
+  @HEAD
+  Single<Response<Void>> probe(@Url String url);
+
+  // Same, with an optional (null for none) Range header, for resuming interrupted downloads.
+  @Streaming
+  @Headers(NO_STORE_HEADER)
+  @GET
+  Single<Response<ResponseBody>> getFile(@Url String url, @Header("Range") String range);
+
+  // Kept apart from InstanceHolder, so that setting it doesn't trigger building the instance.
+  class ContextHolder {
+
+    private static Application context;
+
+  }
+
   class InstanceHolder {
 
+    private static final String HTTP_CACHE_DIRECTORY = "http";
+
+    private static final RateLimitInterceptor RATE_LIMITER =
+        new RateLimitInterceptor(BuildConfig.API_HOURLY_LIMIT);
+    private static final NetworkMetrics METRICS = new NetworkMetrics();
     private static final ApodService INSTANCE;
 
     static {
@@ -49,7 +103,14 @@ public interface ApodService {
           .create();
       OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder()
           .connectTimeout(BuildConfig.HTTP_CONNECT_TIMEOUT, TimeUnit.SECONDS)
-          .readTimeout(BuildConfig.HTTP_READ_TIMEOUT, TimeUnit.SECONDS);
+          .readTimeout(BuildConfig.HTTP_READ_TIMEOUT, TimeUnit.SECONDS)
+          .cache(new Cache(new File(ContextHolder.context.getCacheDir(), HTTP_CACHE_DIRECTORY),
+              BuildConfig.HTTP_CACHE_SIZE))
+          .eventListenerFactory(METRICS.getEventListenerFactory())
+          .addInterceptor(METRICS.getCacheInterceptor())
+          .addInterceptor(RATE_LIMITER)
+          .addNetworkInterceptor(new CachePolicyInterceptor(
+              BuildConfig.HTTP_CACHE_MAX_AGE_PAST, BuildConfig.HTTP_CACHE_MAX_AGE_TODAY));
       if (BuildConfig.HTTP_LOG_LEVEL != Level.NONE) {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
         interceptor.setLevel(BuildConfig.HTTP_LOG_LEVEL);
@@ -57,6 +118,7 @@ public interface ApodService {
       }
       OkHttpClient client = clientBuilder.build();
       Retrofit retrofit = new Retrofit.Builder()
+          .addConverterFactory(ApodStreamConverterFactory.create(gson))
           .addConverterFactory(GsonConverterFactory.create(gson))
           .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
           .client(client)
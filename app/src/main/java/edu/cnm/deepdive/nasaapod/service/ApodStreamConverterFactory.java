@@ -0,0 +1,58 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import androidx.annotation.NonNull;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import edu.cnm.deepdive.nasaapod.model.entity.Apod;
+import io.reactivex.Flowable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+// Converts a JSON array response into a Flowable<Apod> that parses one element per request, so
+// only the element being read is held in memory. Must be added ahead of GsonConverterFactory.
+class ApodStreamConverterFactory extends Converter.Factory {
+
+  private final Gson gson;
+
+  private ApodStreamConverterFactory(Gson gson) {
+    this.gson = gson;
+  }
+
+  static ApodStreamConverterFactory create(@NonNull Gson gson) {
+    return new ApodStreamConverterFactory(gson);
+  }
+
+  @Override
+  public Converter<ResponseBody, ?> responseBodyConverter(@NonNull Type type,
+      @NonNull Annotation[] annotations, @NonNull Retrofit retrofit) {
+    if (getRawType(type) != Flowable.class
+        || !(type instanceof ParameterizedType)
+        || getParameterUpperBound(0, (ParameterizedType) type) != Apod.class) {
+      return null;
+    }
+    TypeAdapter<Apod> adapter = gson.getAdapter(Apod.class);
+    return (body) -> Flowable.generate(
+        () -> {
+          JsonReader reader = gson.newJsonReader(body.charStream());
+          reader.beginArray();
+          return reader;
+        },
+        (reader, emitter) -> {
+          if (reader.hasNext()) {
+            emitter.onNext(adapter.read(reader));
+          } else {
+            reader.endArray();
+            emitter.onComplete();
+          }
+        },
+        // Closes the reader, and with it the response body.
+        JsonReader::close
+    );
+  }
+
+}
@@ -0,0 +1,65 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import android.annotation.SuppressLint;
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Overrides the server's freshness policy for APoD metadata: past APoDs stay fresh for a long time,
+// today's only briefly. ETag/Last-Modified are kept, so stale entries are revalidated, not refetched.
+// Image files are left alone; they're requested no-store, and kept in DiskCache instead.
+class CachePolicyInterceptor implements Interceptor {
+
+  private static final String CACHE_CONTROL_HEADER = "Cache-Control";
+  private static final String PRAGMA_HEADER = "Pragma";
+  private static final String CACHE_CONTROL_FORMAT = "public, max-age=%d";
+  private static final String DATE_PARAMETER = "date";
+  private static final String END_DATE_PARAMETER = "end_date";
+  private static final String API_KEY_PARAMETER = "api_key";
+
+  private final int maxAgePast;
+  private final int maxAgeToday;
+
+  CachePolicyInterceptor(int maxAgePast, int maxAgeToday) {
+    this.maxAgePast = maxAgePast;
+    this.maxAgeToday = maxAgeToday;
+  }
+
+  @NonNull
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Request request = chain.request();
+    Response response = chain.proceed(request);
+    if (!"GET".equals(request.method()) || !response.isSuccessful()
+        || request.url().queryParameter(API_KEY_PARAMETER) == null) {
+      return response;
+    }
+    int maxAge = isPast(request.url()) ? maxAgePast : maxAgeToday;
+    return response.newBuilder()
+        .removeHeader(PRAGMA_HEADER)
+        .header(CACHE_CONTROL_HEADER, String.format(CACHE_CONTROL_FORMAT, maxAge))
+        .build();
+  }
+
+  // Metadata requests carry their date(s) as query parameters; one without is for today.
+  private boolean isPast(HttpUrl url) {
+    String date = url.queryParameter(END_DATE_PARAMETER);
+    if (date == null) {
+      date = url.queryParameter(DATE_PARAMETER);
+    }
+    if (date == null) {
+      return false;
+    }
+    // yyyy-MM-dd strings sort in date order.
+    @SuppressLint("SimpleDateFormat")
+    DateFormat formatter = new SimpleDateFormat(ApodService.DATE_FORMAT);
+    return date.compareTo(formatter.format(new Date())) < 0;
+  }
+
+}
@@ -0,0 +1,295 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Byte-bounded LRU cache of files in a single directory. The index (size of every entry, in access
+// order) lives in memory; the order is also written to a journal file in the directory, so that
+// the startup scan can rebuild the index in LRU order. (File modification times can't be relied
+// on for this: many storage backends ignore setLastModified.) Scanning, eviction and journal
+// writes run on a background thread of their own. Entries are written to a partial file first and
+// renamed into place by commit(key), so an interrupted write never shows up as an entry (but can
+// be resumed); partial files count toward the size limit all the same.
+public class DiskCache {
+
+  private static final String PARTIAL_SUFFIX = ".part";
+  private static final long PARTIAL_MAX_AGE = 24 * 60 * 60 * 1000;
+  private static final String RENAME_FAILURE_FORMAT = "Unable to commit %s to cache.";
+  // Cache keys are file names from URLs, prefixed with a date; never hidden files.
+  private static final String JOURNAL_NAME = ".journal";
+  private static final String JOURNAL_TEMP_NAME = ".journal.tmp";
+
+  private final File directory;
+  private final long maxBytes;
+  private final LinkedHashMap<String, Long> entries;
+  private final Executor executor;
+  private final CountDownLatch ready;
+  private final AtomicBoolean journalPending;
+
+  private long totalBytes;
+  private volatile OnChangeListener listener = (key) -> {};
+
+  public DiskCache(@NonNull File directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    // Access order: iteration starts at the least recently used entry.
+    entries = new LinkedHashMap<>(16, 0.75f, true);
+    executor = Executors.newSingleThreadExecutor();
+    ready = new CountDownLatch(1);
+    journalPending = new AtomicBoolean();
+    executor.execute(this::scan);
+  }
+
+  // Returns the cached file for key, marking it as used; null if there is no such entry. Blocks
+  // until the startup scan has finished, so should not be called on the UI thread.
+  @Nullable
+  public File get(@NonNull String key) {
+    awaitReady();
+    synchronized (this) {
+      if (entries.get(key) == null) {
+        return null;
+      }
+    }
+    scheduleJournal();
+    return new File(directory, key);
+  }
+
+  // Where the contents for key should be written, before calling put(key).
+  @NonNull
+  public File getFile(@NonNull String key) {
+    return new File(directory, key);
+  }
+
+  // Where an entry for key is written (and, after an interruption, continued) before commit(key).
+  @NonNull
+  public File getPartialFile(@NonNull String key) {
+    return new File(directory, key + PARTIAL_SUFFIX);
+  }
+
+  // A partial file for key that no other writer will be given, for writes that needn't (or
+  // mustn't) resume someone else's; commit it with commit(key, partial).
+  @NonNull
+  public File createPartialFile(@NonNull String key) throws IOException {
+    //noinspection ResultOfMethodCallIgnored
+    directory.mkdirs();
+    return File.createTempFile(key + ".", PARTIAL_SUFFIX, directory);
+  }
+
+  // Atomically moves the completed partial file for key into place and adds it as an entry.
+  public void commit(@NonNull String key) throws IOException {
+    commit(key, getPartialFile(key));
+  }
+
+  public void commit(@NonNull String key, @NonNull File partial) throws IOException {
+    if (!partial.renameTo(getFile(key))) {
+      throw new IOException(String.format(RENAME_FAILURE_FORMAT, partial));
+    }
+    put(key);
+  }
+
+  // Adds (or replaces) the entry for key, using the file already written at getFile(key).
+  public void put(@NonNull String key) {
+    awaitReady();
+    long size = getFile(key).length();
+    synchronized (this) {
+      Long previous = entries.put(key, size);
+      if (previous != null) {
+        totalBytes -= previous;
+      }
+      totalBytes += size;
+    }
+    listener.onChange(key);
+    executor.execute(this::trim);
+    scheduleJournal();
+  }
+
+  public void remove(@NonNull String key) {
+    awaitReady();
+    synchronized (this) {
+      Long previous = entries.remove(key);
+      if (previous != null) {
+        totalBytes -= previous;
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    getFile(key).delete();
+    listener.onChange(key);
+    scheduleJournal();
+  }
+
+  // Notified (on an arbitrary thread) whenever the entry for a key is written, removed or evicted.
+  public void setOnChangeListener(@Nullable OnChangeListener listener) {
+    this.listener = (listener != null) ? listener : (key) -> {};
+  }
+
+  // Committed entries only; partial files aren't included.
+  public synchronized long getSize() {
+    return totalBytes;
+  }
+
+  public long getMaxSize() {
+    return maxBytes;
+  }
+
+  private void scan() {
+    //noinspection ResultOfMethodCallIgnored
+    directory.mkdirs();
+    long staleBefore = System.currentTimeMillis() - PARTIAL_MAX_AGE;
+    File[] partials = directory.listFiles((file) -> file.getName().endsWith(PARTIAL_SUFFIX));
+    if (partials != null) {
+      for (File partial : partials) {
+        // Recent partial files are kept for resuming; older ones are abandoned.
+        if (partial.lastModified() < staleBefore) {
+          //noinspection ResultOfMethodCallIgnored
+          partial.delete();
+        }
+      }
+    }
+    File[] files = directory.listFiles((file) -> file.isFile() && isEntryName(file.getName()));
+    if (files == null) {
+      files = new File[0];
+    }
+    // Files in the journal come back in its order. Any it doesn't list were committed after it was
+    // last written, so they're the most recently used; their modification times order them.
+    Map<String, Integer> order = readJournal();
+    Arrays.sort(files, (a, b) -> {
+      Integer orderA = order.get(a.getName());
+      Integer orderB = order.get(b.getName());
+      if (orderA != null && orderB != null) {
+        return Integer.compare(orderA, orderB);
+      } else if (orderA != null || orderB != null) {
+        return (orderA != null) ? -1 : 1;
+      }
+      return Long.compare(a.lastModified(), b.lastModified());
+    });
+    synchronized (this) {
+      for (File file : files) {
+        long size = file.length();
+        entries.put(file.getName(), size);
+        totalBytes += size;
+      }
+    }
+    ready.countDown();
+    trim();
+    writeJournal();
+  }
+
+  private void trim() {
+    long partialBytes = getPartialSize();
+    while (true) {
+      String key;
+      synchronized (this) {
+        if (totalBytes + partialBytes <= maxBytes || entries.isEmpty()) {
+          return;
+        }
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        Map.Entry<String, Long> eldest = iterator.next();
+        key = eldest.getKey();
+        totalBytes -= eldest.getValue();
+        iterator.remove();
+      }
+      //noinspection ResultOfMethodCallIgnored
+      getFile(key).delete();
+      listener.onChange(key);
+      scheduleJournal();
+    }
+  }
+
+  private long getPartialSize() {
+    long size = 0;
+    File[] partials = directory.listFiles((file) -> file.getName().endsWith(PARTIAL_SUFFIX));
+    if (partials != null) {
+      for (File partial : partials) {
+        size += partial.length();
+      }
+    }
+    return size;
+  }
+
+  private boolean isEntryName(String name) {
+    return !name.endsWith(PARTIAL_SUFFIX)
+        && !name.equals(JOURNAL_NAME) && !name.equals(JOURNAL_TEMP_NAME);
+  }
+
+  // However many accesses happen while a write is queued, they're covered by that one write.
+  private void scheduleJournal() {
+    if (journalPending.compareAndSet(false, true)) {
+      executor.execute(this::writeJournal);
+    }
+  }
+
+  // Position of each key in the journal, least recently used first; empty if there's no journal.
+  private Map<String, Integer> readJournal() {
+    Map<String, Integer> order = new HashMap<>();
+    File journal = new File(directory, JOURNAL_NAME);
+    if (journal.exists()) {
+      try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+        String key;
+        while ((key = reader.readLine()) != null) {
+          order.put(key, order.size());
+        }
+      } catch (IOException ex) {
+        // Whatever was read is still a better guess than modification times alone.
+      }
+    }
+    return order;
+  }
+
+  // Written in full to a temporary file and renamed over the old journal, so a crash mid-write
+  // leaves the previous journal in place.
+  private void writeJournal() {
+    journalPending.set(false);
+    List<String> keys;
+    synchronized (this) {
+      keys = new ArrayList<>(entries.keySet());
+    }
+    File temp = new File(directory, JOURNAL_TEMP_NAME);
+    boolean written;
+    try (PrintWriter writer = new PrintWriter(new FileWriter(temp))) {
+      for (String key : keys) {
+        writer.println(key);
+      }
+      written = !writer.checkError();
+    } catch (IOException ex) {
+      written = false;
+    }
+    if (!written || !temp.renameTo(new File(directory, JOURNAL_NAME))) {
+      // The order is lost only if the process dies before the next write succeeds.
+      //noinspection ResultOfMethodCallIgnored
+      temp.delete();
+    }
+  }
+
+  private void awaitReady() {
+    try {
+      ready.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @FunctionalInterface
+  public interface OnChangeListener {
+
+    void onChange(@NonNull String key);
+
+  }
+
+}
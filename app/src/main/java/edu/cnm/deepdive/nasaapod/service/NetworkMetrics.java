@@ -0,0 +1,285 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+// Per-endpoint timings, transfer sizes and cache outcomes for every call made by the ApodService
+// client, recorded into lock-free histograms. Nothing is logged; the totals are written out on
+// demand with export(Writer). Timings start at the first network event of an attempt, not at
+// callStart: the rate limiter (an application interceptor) may sleep before and between attempts,
+// and that waiting isn't network time.
+public class NetworkMetrics {
+
+  private static final String METADATA_PATH = "planetary/apod";
+
+  private final Histogram[][] timings;
+  private final Histogram[] bytes;
+  private final AtomicLong[][] cacheCounts;
+  private final AtomicLong[] failureCounts;
+  private final AtomicLong[] connectFailureCounts;
+
+  NetworkMetrics() {
+    int endpoints = Endpoint.values().length;
+    timings = new Histogram[endpoints][Phase.values().length];
+    bytes = new Histogram[endpoints];
+    cacheCounts = new AtomicLong[endpoints][CacheStatus.values().length];
+    failureCounts = new AtomicLong[endpoints];
+    connectFailureCounts = new AtomicLong[endpoints];
+    for (int i = 0; i < endpoints; i++) {
+      for (int j = 0; j < timings[i].length; j++) {
+        timings[i][j] = new Histogram();
+      }
+      for (int j = 0; j < cacheCounts[i].length; j++) {
+        cacheCounts[i][j] = new AtomicLong();
+      }
+      bytes[i] = new Histogram();
+      failureCounts[i] = new AtomicLong();
+      connectFailureCounts[i] = new AtomicLong();
+    }
+  }
+
+  // One listener per call; OkHttp delivers a call's events sequentially.
+  EventListener.Factory getEventListenerFactory() {
+    return (call) -> new CallListener(Endpoint.of(call.request().url()));
+  }
+
+  // Application interceptor recording whether the final response came from the cache.
+  Interceptor getCacheInterceptor() {
+    return (chain) -> {
+      Response response = chain.proceed(chain.request());
+      CacheStatus status;
+      if (response.cacheResponse() == null) {
+        status = CacheStatus.MISS;
+      } else if (response.networkResponse() == null) {
+        status = CacheStatus.HIT;
+      } else {
+        status = CacheStatus.CONDITIONAL;
+      }
+      cacheCounts[Endpoint.of(chain.request().url()).ordinal()][status.ordinal()]
+          .incrementAndGet();
+      return response;
+    };
+  }
+
+  public void export(@NonNull Writer writer) {
+    PrintWriter printer = new PrintWriter(writer);
+    for (Endpoint endpoint : Endpoint.values()) {
+      int index = endpoint.ordinal();
+      printer.printf("%s%n", endpoint);
+      printer.printf("  failures: %d%n", failureCounts[index].get());
+      printer.printf("  connect failures: %d%n", connectFailureCounts[index].get());
+      for (CacheStatus status : CacheStatus.values()) {
+        printer.printf("  cache %s: %d%n", status, cacheCounts[index][status.ordinal()].get());
+      }
+      for (Phase phase : Phase.values()) {
+        printer.printf("  %s (ms): %s%n", phase, timings[index][phase.ordinal()]);
+      }
+      printer.printf("  bytes: %s%n", bytes[index]);
+    }
+    printer.flush();
+  }
+
+  public enum Endpoint {
+    METADATA,
+    MEDIA;
+
+    private static Endpoint of(HttpUrl url) {
+      return url.encodedPath().endsWith(METADATA_PATH) ? METADATA : MEDIA;
+    }
+
+  }
+
+  public enum Phase {
+    DNS,
+    CONNECT,
+    TTFB,
+    TOTAL
+  }
+
+  public enum CacheStatus {
+    HIT,
+    CONDITIONAL,
+    MISS
+  }
+
+  // Power-of-two buckets; recording is a handful of atomic increments, with no locks or allocation.
+  private static class Histogram {
+
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private void record(long value) {
+      long clamped = Math.max(0, value);
+      buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(clamped));
+      count.incrementAndGet();
+      sum.addAndGet(clamped);
+      long current;
+      while (clamped > (current = max.get()) && !max.compareAndSet(current, clamped)) {
+        // Another thread raised the max first; try again against its value.
+      }
+    }
+
+    // Upper bound of the bucket holding the requested fraction of recorded values.
+    private long percentile(double fraction) {
+      long target = (long) Math.ceil(count.get() * fraction);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        seen += buckets.get(i);
+        if (seen >= target && seen > 0) {
+          return (i == 0) ? 0 : (1L << i) - 1;
+        }
+      }
+      return max.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+      long n = count.get();
+      return String.format(Locale.US, "n=%d mean=%d p50<=%d p90<=%d p99<=%d max=%d",
+          n, (n > 0) ? sum.get() / n : 0,
+          percentile(0.5), percentile(0.9), percentile(0.99), max.get());
+    }
+
+  }
+
+  private class CallListener extends EventListener {
+
+    private final int endpoint;
+
+    private long attemptStart;
+    private long networkTime;
+    private long dnsStart;
+    private long connectStart;
+    private boolean firstByte;
+
+    private CallListener(Endpoint endpoint) {
+      this.endpoint = endpoint.ordinal();
+    }
+
+    @Override
+    public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+      dnsStart = System.nanoTime();
+      beginAttempt(dnsStart);
+    }
+
+    @Override
+    public void dnsEnd(@NonNull Call call, @NonNull String domainName,
+        @NonNull List<InetAddress> inetAddressList) {
+      record(Phase.DNS, dnsStart);
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress,
+        @NonNull Proxy proxy) {
+      connectStart = System.nanoTime();
+      beginAttempt(connectStart);
+    }
+
+    @Override
+    public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress,
+        @NonNull Proxy proxy, Protocol protocol) {
+      record(Phase.CONNECT, connectStart);
+    }
+
+    // OkHttp goes on to the next route, if there is one; the time still counts toward CONNECT.
+    @Override
+    public void connectFailed(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress,
+        @NonNull Proxy proxy, Protocol protocol, @NonNull IOException ioe) {
+      connectFailureCounts[endpoint].incrementAndGet();
+      record(Phase.CONNECT, connectStart);
+    }
+
+    // A pooled connection skips DNS and connect; the request headers start the attempt then.
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+      beginAttempt(System.nanoTime());
+    }
+
+    @Override
+    public void requestFailed(@NonNull Call call, @NonNull IOException ioe) {
+      endAttempt();
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+      // Retries and redirects within a call report again; only the first byte counts.
+      if (!firstByte) {
+        firstByte = true;
+        record(Phase.TTFB, attemptStart);
+      }
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+      bytes[endpoint].record(byteCount);
+      endAttempt();
+    }
+
+    @Override
+    public void responseFailed(@NonNull Call call, @NonNull IOException ioe) {
+      endAttempt();
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+      recordTotal();
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+      failureCounts[endpoint].incrementAndGet();
+      recordTotal();
+    }
+
+    private void beginAttempt(long now) {
+      if (attemptStart == 0) {
+        attemptStart = now;
+      }
+    }
+
+    private void endAttempt() {
+      if (attemptStart != 0) {
+        networkTime += System.nanoTime() - attemptStart;
+        attemptStart = 0;
+      }
+    }
+
+    // The network time of every attempt in the call, without the waits between them. A call
+    // answered entirely from the cache never reached the network, and isn't recorded.
+    private void recordTotal() {
+      endAttempt();
+      if (networkTime > 0) {
+        timings[endpoint][Phase.TOTAL.ordinal()]
+            .record(TimeUnit.NANOSECONDS.toMillis(networkTime));
+      }
+    }
+
+    private void record(Phase phase, long start) {
+      timings[endpoint][phase.ordinal()]
+          .record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+  }
+
+}
@@ -0,0 +1,177 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.schedulers.Schedulers;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Each class of network traffic gets its own pool, so a burst of thumbnails or HD downloads can't
+// queue ahead of the request the user is waiting on.
+public enum NetworkPriority {
+
+  // Concurrency, whether queued work may be dropped, and the share of the API quota that must be
+  // left over before a request of this class may spend a token.
+  INTERACTIVE(4, false, 0),
+  THUMBNAIL(3, true, 0.25),
+  PREFETCH(2, true, 0.5),
+  DOWNLOAD(4, false, 0.1);
+
+  private static final long KEEP_ALIVE_SECONDS = 30;
+  private static final int DROPPABLE_QUEUE_CAPACITY = 24;
+
+  private final ThreadPoolExecutor executor;
+  private final Scheduler scheduler;
+  private final boolean droppable;
+  private final double quotaReserve;
+  private final AtomicLong droppedCount;
+
+  NetworkPriority(int concurrency, boolean droppable, double quotaReserve) {
+    this.droppable = droppable;
+    this.quotaReserve = quotaReserve;
+    droppedCount = new AtomicLong();
+    String threadName = "network-" + name().toLowerCase();
+    BlockingQueue<Runnable> queue =
+        droppable ? new NewestFirstQueue(DROPPABLE_QUEUE_CAPACITY) : new LinkedBlockingDeque<>();
+    executor = new ThreadPoolExecutor(concurrency, concurrency,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue,
+        (runnable) -> new PriorityThread(runnable, threadName, this),
+        (runnable, executor) -> {
+          // Only reached by droppable classes, when the queue is full: the oldest request is the one
+          // least likely to still be wanted (e.g. a row that has scrolled off the screen). It fails,
+          // rather than vanishing, so whoever is waiting on it hears about it and can fall back.
+          if (executor.isShutdown() || !dropOldest(executor.getQueue())) {
+            throw new RejectedExecutionException();
+          }
+          droppedCount.incrementAndGet();
+          executor.execute(runnable);
+        });
+    executor.allowCoreThreadTimeOut(true);
+    scheduler = Schedulers.from(executor);
+  }
+
+  // The class whose pool the calling thread belongs to, or INTERACTIVE for any other thread.
+  @NonNull
+  public static NetworkPriority current() {
+    Thread thread = Thread.currentThread();
+    return (thread instanceof PriorityThread) ? ((PriorityThread) thread).priority : INTERACTIVE;
+  }
+
+  // For classes that never drop work. Droppable classes go through submit, since work scheduled
+  // here has no way of being told it was dropped.
+  @NonNull
+  public Scheduler getScheduler() {
+    return scheduler;
+  }
+
+  // Subscribes to the work on this class's pool, like subscribeOn(getScheduler()), except that work
+  // dropped from a full queue fails with a RejectedExecutionException. Work disposed while still
+  // queued is taken out of the queue, so it doesn't hold a slot.
+  @NonNull
+  public <T> Single<T> submit(@NonNull Single<T> work) {
+    return Single.create((emitter) -> {
+      QueuedWork<T> task = new QueuedWork<>(work, emitter);
+      emitter.setCancellable(() -> {
+        if (task.cancel()) {
+          executor.remove(task);
+        }
+      });
+      executor.execute(task);
+    });
+  }
+
+  public boolean isDroppable() {
+    return droppable;
+  }
+
+  public double getQuotaReserve() {
+    return quotaReserve;
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  private static boolean dropOldest(BlockingQueue<Runnable> queue) {
+    Iterator<Runnable> iterator = ((LinkedBlockingDeque<Runnable>) queue).descendingIterator();
+    while (iterator.hasNext()) {
+      Runnable runnable = iterator.next();
+      if (runnable instanceof QueuedWork) {
+        iterator.remove();
+        ((QueuedWork<?>) runnable).drop();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class PriorityThread extends Thread {
+
+    private final NetworkPriority priority;
+
+    private PriorityThread(Runnable runnable, String name, NetworkPriority priority) {
+      super(runnable, name);
+      this.priority = priority;
+    }
+
+  }
+
+  // Work that starts, is cancelled, or is dropped: whichever happens first.
+  private static class QueuedWork<T> implements Runnable {
+
+    private static final int QUEUED = 0;
+    private static final int STARTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final Single<T> work;
+    private final SingleEmitter<T> emitter;
+    private final AtomicInteger state;
+
+    private QueuedWork(Single<T> work, SingleEmitter<T> emitter) {
+      this.work = work;
+      this.emitter = emitter;
+      state = new AtomicInteger(QUEUED);
+    }
+
+    @Override
+    public void run() {
+      if (state.compareAndSet(QUEUED, STARTED)) {
+        emitter.setDisposable(work.subscribe(emitter::onSuccess, emitter::tryOnError));
+      }
+    }
+
+    private boolean cancel() {
+      return state.compareAndSet(QUEUED, CANCELLED);
+    }
+
+    private void drop() {
+      if (cancel()) {
+        emitter.tryOnError(new RejectedExecutionException());
+      }
+    }
+
+  }
+
+  // Hands out the most recently queued work first.
+  private static class NewestFirstQueue extends LinkedBlockingDeque<Runnable> {
+
+    private NewestFirstQueue(int capacity) {
+      super(capacity);
+    }
+
+    @Override
+    public boolean offer(Runnable runnable) {
+      return offerFirst(runnable);
+    }
+
+  }
+
+}
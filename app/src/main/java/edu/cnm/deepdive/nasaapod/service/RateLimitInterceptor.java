@@ -0,0 +1,160 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import androidx.annotation.NonNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Token bucket in front of the NASA API key's hourly quota. Lower-priority classes may only spend
+// tokens while their reserve (see NetworkPriority) is left for the classes above them; droppable
+// classes are shed rather than made to wait. 429 and 5xx responses are retried with jittered
+// exponential backoff (or after Retry-After, when the server sends it).
+public class RateLimitInterceptor implements Interceptor {
+
+  private static final String API_KEY_PARAMETER = "api_key";
+  private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+  private static final String RETRY_AFTER_HEADER = "Retry-After";
+  private static final String QUOTA_EXHAUSTED = "API request quota exhausted.";
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final int SERVER_ERROR = 500;
+  private static final int MAX_RETRIES = 3;
+  private static final long BASE_BACKOFF_MILLIS = 500;
+  private static final long MAX_BACKOFF_MILLIS = 30_000;
+  private static final long MAX_WAIT_MILLIS = 10_000;
+  private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+  private final int capacity;
+  private final double refillPerMilli;
+  private final Random random;
+  private final AtomicLong throttledCount;
+  private final AtomicLong retriedCount;
+  private final AtomicLong shedCount;
+
+  private double tokens;
+  private long lastRefill;
+
+  RateLimitInterceptor(int hourlyLimit) {
+    capacity = hourlyLimit;
+    refillPerMilli = (double) hourlyLimit / MILLIS_PER_HOUR;
+    random = new Random();
+    throttledCount = new AtomicLong();
+    retriedCount = new AtomicLong();
+    shedCount = new AtomicLong();
+    tokens = hourlyLimit;
+    lastRefill = System.currentTimeMillis();
+  }
+
+  @NonNull
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Request request = chain.request();
+    // Only API calls count against the key; image files are served from apod.nasa.gov.
+    if (request.url().queryParameter(API_KEY_PARAMETER) == null) {
+      return chain.proceed(request);
+    }
+    NetworkPriority priority = NetworkPriority.current();
+    for (int attempt = 0; ; attempt++) {
+      acquire(priority);
+      Response response = chain.proceed(request);
+      if (response.networkResponse() == null) {
+        // Served entirely from the HTTP cache; NASA never saw it.
+        release();
+      }
+      updateRemaining(response.header(REMAINING_HEADER));
+      int code = response.code();
+      if ((code != TOO_MANY_REQUESTS && code < SERVER_ERROR) || attempt >= MAX_RETRIES) {
+        return response;
+      }
+      long delay = getBackoff(attempt, response.header(RETRY_AFTER_HEADER));
+      response.close();
+      retriedCount.incrementAndGet();
+      sleep(delay);
+    }
+  }
+
+  public long getThrottledCount() {
+    return throttledCount.get();
+  }
+
+  public long getRetriedCount() {
+    return retriedCount.get();
+  }
+
+  public long getShedCount() {
+    return shedCount.get();
+  }
+
+  private void acquire(NetworkPriority priority) throws IOException {
+    double floor = capacity * priority.getQuotaReserve();
+    long waited = 0;
+    while (true) {
+      long wait;
+      synchronized (this) {
+        refill();
+        if (tokens - 1 >= floor) {
+          tokens--;
+          return;
+        }
+        wait = (long) Math.ceil((floor + 1 - tokens) / refillPerMilli);
+      }
+      if (priority.isDroppable() || waited + wait > MAX_WAIT_MILLIS) {
+        shedCount.incrementAndGet();
+        throw new IOException(QUOTA_EXHAUSTED);
+      }
+      if (waited == 0) {
+        throttledCount.incrementAndGet();
+      }
+      sleep(wait);
+      waited += wait;
+    }
+  }
+
+  private synchronized void release() {
+    tokens = Math.min(capacity, tokens + 1);
+  }
+
+  private synchronized void refill() {
+    long now = System.currentTimeMillis();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMilli);
+    lastRefill = now;
+  }
+
+  // The server's count wins whenever it's lower than ours (e.g. the key is shared, or was used
+  // before this process started).
+  private synchronized void updateRemaining(String header) {
+    if (header != null) {
+      try {
+        tokens = Math.min(tokens, Integer.parseInt(header.trim()));
+      } catch (NumberFormatException ignored) {
+        // Leave the local estimate alone.
+      }
+    }
+  }
+
+  private long getBackoff(int attempt, String retryAfter) {
+    if (retryAfter != null) {
+      try {
+        return Math.min(MAX_BACKOFF_MILLIS, Long.parseLong(retryAfter.trim()) * 1000);
+      } catch (NumberFormatException ignored) {
+        // Probably an HTTP date; fall back to our own schedule.
+      }
+    }
+    long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+    // Full jitter, so clients that failed together don't retry together.
+    return (long) (random.nextDouble() * ceiling);
+  }
+
+  private void sleep(long millis) throws InterruptedIOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+}
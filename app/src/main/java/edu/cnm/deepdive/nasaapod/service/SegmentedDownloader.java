@@ -0,0 +1,227 @@
+package edu.cnm.deepdive.nasaapod.service;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import retrofit2.Response;
+
+// Downloads a large file as several byte ranges at once (over the client's shared connection pool),
+// each written straight into its place in a preallocated file. Falls back to a single stream when
+// the server doesn't support ranges, doesn't report a length, or the file is too small to bother.
+public class SegmentedDownloader {
+
+  private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+  private static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+  private static final String CONTENT_RANGE_HEADER = "Content-Range";
+  private static final String BYTE_RANGES = "bytes";
+  private static final String RANGE_FORMAT = "bytes=%d-%d";
+  private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/.*$");
+  private static final int HTTP_PARTIAL_CONTENT = 206;
+  private static final long MIN_SEGMENT_SIZE = 1 << 20;
+  // Segments check whether they're still wanted between chunks of this size.
+  private static final long CHUNK_SIZE = 64 * 1024;
+  private static final String DOWNLOAD_FAILURE_FORMAT = "Download failed (HTTP %d).";
+  private static final String SEGMENT_FAILURE_FORMAT = "Server ignored range request for %s.";
+  private static final String STALL_FAILURE_FORMAT = "Segment stalled at byte %d of %s.";
+
+  private final ApodService nasa;
+  private final int maxSegments;
+  private final Scheduler scheduler;
+
+  public SegmentedDownloader(@NonNull ApodService nasa, int maxSegments,
+      @NonNull Scheduler scheduler) {
+    this.nasa = nasa;
+    this.maxSegments = maxSegments;
+    this.scheduler = scheduler;
+  }
+
+  // Writes the resource at url to target, replacing anything already there. On failure, target is
+  // deleted.
+  public Completable download(@NonNull String url, @NonNull File target) {
+    return nasa.probe(url)
+        .subscribeOn(scheduler)
+        .flatMapCompletable((response) -> {
+          long length = parseLength(response.headers().get(CONTENT_LENGTH_HEADER));
+          boolean ranges = BYTE_RANGES.equalsIgnoreCase(response.headers().get(ACCEPT_RANGES_HEADER));
+          int segments = (int) Math.min(maxSegments, Math.max(length, 0) / MIN_SEGMENT_SIZE);
+          return (response.isSuccessful() && ranges && segments > 1)
+              ? downloadSegments(url, target, length, segments)
+              : downloadStream(url, target);
+        });
+  }
+
+  // When one segment fails, the rest are disposed; each notices between chunks and stops. The file
+  // is closed (and, unless every segment finished, deleted) only once the last of them has let go
+  // of it, so nothing is ever written to a closed channel.
+  private Completable downloadSegments(String url, File target, long length, int segments) {
+    long segmentSize = (length + segments - 1) / segments;
+    return Completable.using(
+        () -> new SharedFile(target, length),
+        (file) -> Flowable.range(0, segments)
+            .flatMapCompletable((index) -> {
+              long start = index * segmentSize;
+              long end = Math.min(length, start + segmentSize) - 1;
+              return downloadSegment(url, file, start, end);
+            }, false, segments)
+            .doOnComplete(file::setComplete),
+        SharedFile::release,
+        false
+    );
+  }
+
+  private Completable downloadSegment(String url, SharedFile file, long start, long end) {
+    return nasa.getFile(url, String.format(RANGE_FORMAT, start, end))
+        .subscribeOn(scheduler)
+        .flatMapCompletable((response) -> Completable.create((emitter) -> {
+          // Errors go through tryOnError: a segment failing after the download was disposed has
+          // nobody left to tell.
+          try {
+            writeSegment(url, response, file, start, end, emitter);
+            emitter.onComplete();
+          } catch (IOException | RuntimeException ex) {
+            emitter.tryOnError(ex);
+          }
+        }));
+  }
+
+  private void writeSegment(String url, Response<ResponseBody> response, SharedFile file,
+      long start, long end, CompletableEmitter emitter) throws IOException {
+    ResponseBody body = checkBody(response);
+    Matcher matcher = CONTENT_RANGE_PATTERN.matcher(
+        String.valueOf(response.headers().get(CONTENT_RANGE_HEADER)));
+    if (response.code() != HTTP_PARTIAL_CONTENT
+        || !matcher.matches() || Long.parseLong(matcher.group(1)) != start) {
+      body.close();
+      throw new IOException(String.format(SEGMENT_FAILURE_FORMAT, url));
+    }
+    if (!file.retain()) {
+      // The download already ended; the file is closed.
+      body.close();
+      return;
+    }
+    try (BufferedSource source = body.source()) {
+      FileChannel channel = file.getChannel();
+      long count = end - start + 1;
+      long written = 0;
+      while (written < count && !emitter.isDisposed()) {
+        // Positional write; segments share the channel without coordinating.
+        long transferred = channel.transferFrom(source, start + written,
+            Math.min(CHUNK_SIZE, count - written));
+        if (transferred <= 0) {
+          if (source.exhausted()) {
+            throw new EOFException();
+          }
+          throw new IOException(String.format(STALL_FAILURE_FORMAT, start + written, url));
+        }
+        written += transferred;
+      }
+    } finally {
+      file.release();
+    }
+  }
+
+  private Completable downloadStream(String url, File target) {
+    return nasa.getFile(url, null)
+        .subscribeOn(scheduler)
+        .flatMapCompletable((response) -> Completable.fromAction(() -> {
+          ResponseBody body = checkBody(response);
+          try (
+              BufferedSource source = body.source();
+              BufferedSink sink = Okio.buffer(Okio.sink(target));
+          ) {
+            source.readAll(sink);
+          }
+        }))
+        .doOnError((throwable) -> {
+          //noinspection ResultOfMethodCallIgnored
+          target.delete();
+        });
+  }
+
+  private ResponseBody checkBody(Response<ResponseBody> response) throws IOException {
+    ResponseBody body = response.body();
+    if (!response.isSuccessful() || body == null) {
+      throw new IOException(String.format(DOWNLOAD_FAILURE_FORMAT, response.code()));
+    }
+    return body;
+  }
+
+  private long parseLength(String header) {
+    try {
+      return (header != null) ? Long.parseLong(header.trim()) : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  // The preallocated target, reference counted: one reference for the download as a whole, plus
+  // one for each segment while it's writing. Whoever lets go last closes the file.
+  private static class SharedFile {
+
+    private final File target;
+    private final RandomAccessFile file;
+
+    private int references = 1;
+    private boolean complete;
+
+    private SharedFile(File target, long length) throws IOException {
+      this.target = target;
+      file = new RandomAccessFile(target, "rw");
+      try {
+        // Preallocate, so every segment can be written at its final offset.
+        file.setLength(length);
+      } catch (IOException ex) {
+        file.close();
+        //noinspection ResultOfMethodCallIgnored
+        target.delete();
+        throw ex;
+      }
+    }
+
+    private FileChannel getChannel() {
+      return file.getChannel();
+    }
+
+    private synchronized boolean retain() {
+      if (references == 0) {
+        return false;
+      }
+      references++;
+      return true;
+    }
+
+    private synchronized void setComplete() {
+      complete = true;
+    }
+
+    private synchronized void release() {
+      if (--references == 0) {
+        try {
+          file.close();
+        } catch (IOException ignored) {
+          // Nothing more will be written; a failed close leaves nothing to clean up but the file.
+          complete = false;
+        }
+        if (!complete) {
+          //noinspection ResultOfMethodCallIgnored
+          target.delete();
+        }
+      }
+    }
+
+  }
+
+}
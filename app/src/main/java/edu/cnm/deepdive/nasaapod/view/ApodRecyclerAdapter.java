@@ -8,28 +8,49 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.squareup.picasso.Picasso;
 import edu.cnm.deepdive.nasaapod.R;
-import edu.cnm.deepdive.nasaapod.model.entity.Apod;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod.MediaType;
-import edu.cnm.deepdive.nasaapod.model.pojo.ApodWithStats;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
 import edu.cnm.deepdive.nasaapod.view.ApodRecyclerAdapter.Holder;
 import io.reactivex.functions.Consumer;
-import java.util.List;
+import java.util.Date;
+import java.util.Objects;
+
+public class ApodRecyclerAdapter extends PagedListAdapter<ApodSummary, Holder> {
+
+  // Rows are the same APoD if the ids match; redrawn only if something shown has changed.
+  private static final DiffUtil.ItemCallback<ApodSummary> DIFF_CALLBACK =
+      new DiffUtil.ItemCallback<ApodSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ApodSummary oldItem,
+            @NonNull ApodSummary newItem) {
+          return oldItem.getId() == newItem.getId();
+        }
 
-public class ApodRecyclerAdapter extends RecyclerView.Adapter<Holder> {
+        @Override
+        public boolean areContentsTheSame(@NonNull ApodSummary oldItem,
+            @NonNull ApodSummary newItem) {
+          return oldItem.getAccessCount() == newItem.getAccessCount()
+              && oldItem.getLastAccess() == newItem.getLastAccess()
+              && oldItem.getTitle().equals(newItem.getTitle())
+              && oldItem.getMediaType() == newItem.getMediaType()
+              && Objects.equals(oldItem.getUrl(), newItem.getUrl());
+        }
+      };
 
   private final Context context;
-  private final List<ApodWithStats> apods;
   private final OnClickListener listener;
   private final ThumbnailResolver resolver;
 
   // code used when needing URL for single item.
-  public ApodRecyclerAdapter(Context context, List<ApodWithStats> apods,
-      OnClickListener listener, ThumbnailResolver resolver) {
+  public ApodRecyclerAdapter(Context context, OnClickListener listener,
+      ThumbnailResolver resolver) {
+    super(DIFF_CALLBACK);
     this.context = context;
-    this.apods = apods;
     this.listener = (listener != null) ? listener : (v, apod, pos) -> {};
     this.resolver = resolver;
   }
@@ -44,15 +65,10 @@ public class ApodRecyclerAdapter extends RecyclerView.Adapter<Holder> {
 
   @Override
   public void onBindViewHolder(@NonNull Holder holder, int position) {
-    ApodWithStats apod = apods.get(position);
+    ApodSummary apod = getItem(position);
     holder.bind(position, apod);
   }
 
-  @Override
-  public int getItemCount() {
-    return apods.size();
-  }
-
   class Holder extends RecyclerView.ViewHolder {
 
     private final View view;
@@ -70,30 +86,36 @@ public class ApodRecyclerAdapter extends RecyclerView.Adapter<Holder> {
       access = view.findViewById(R.id.access);
     }
 
-    private void bind(int position, ApodWithStats apod) {
-      title.setText(apod.getApod().getTitle());
-      date.setText(DateFormat.getMediumDateFormat(context).format(apod.getApod().getDate()));
-      String countQuantity = context.getResources()
-          .getQuantityString(R.plurals.access_count, apod.getAccessCount());
-      access.setText(context.getString(R.string.access_format,
-          apod.getAccessCount(),
-          DateFormat.getMediumDateFormat(context).format(apod.getLastAccess()),
-          countQuantity));
+    private void bind(int position, ApodSummary apod) {
+      title.setText(apod.getTitle());
+      date.setText(DateFormat.getMediumDateFormat(context).format(apod.getDate()));
+      // Days only fetched in the background (range or prefetch) haven't been viewed yet.
+      if (apod.getAccessCount() > 0) {
+        String countQuantity = context.getResources()
+            .getQuantityString(R.plurals.access_count, apod.getAccessCount());
+        access.setText(context.getString(R.string.access_format,
+            apod.getAccessCount(),
+            DateFormat.getMediumDateFormat(context).format(new Date(apod.getLastAccess())),
+            countQuantity));
+        access.setVisibility(View.VISIBLE);
+      } else {
+        access.setVisibility(View.GONE);
+      }
       // Returns one instance of Picasso.
       Picasso picasso = Picasso.get();
       // if not image, uses play button image holder.
-      if (apod.getApod().getMediaType() == MediaType.IMAGE) {
+      if (apod.getMediaType() == MediaType.IMAGE) {
         if (resolver != null) {
           // When it finds URL, take it and place in picasso then load in thumbnail.
-          resolver.apply(apod.getApod(), (path) -> picasso.load(path).into(thumbnail));
+          resolver.apply(apod, (path) -> picasso.load(path).into(thumbnail));
         } else {
-          picasso.load(apod.getApod().getUrl()).into(thumbnail);
+          picasso.load(apod.getUrl()).into(thumbnail);
         }
       } else {
         thumbnail.setImageResource(R.drawable.ic_slow_motion_video);
       }
-      thumbnail.setContentDescription(apod.getApod().getTitle());
-      view.setOnClickListener((v) -> listener.onClick(v, apod.getApod(), position));
+      thumbnail.setContentDescription(apod.getTitle());
+      view.setOnClickListener((v) -> listener.onClick(v, apod, position));
     }
 
   }
@@ -101,14 +123,14 @@ public class ApodRecyclerAdapter extends RecyclerView.Adapter<Holder> {
   @FunctionalInterface
   public interface OnClickListener {
 
-    void onClick(View view, Apod apod, int position);
+    void onClick(View view, ApodSummary apod, int position);
 
   }
     // functional interface has one implemented method.
   @FunctionalInterface
   public interface ThumbnailResolver {
     // Thumbnail resolver, adapter doesnt have to know about viewmodel.
-    void apply(Apod apod, Consumer<String> consumer);
+    void apply(ApodSummary apod, Consumer<String> consumer);
 
   }
 
@@ -0,0 +1,316 @@
+package edu.cnm.deepdive.nasaapod.view;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Pan/zoom viewer for a local image file. Only a screen-sized preview of the whole image is kept;
+// zoomed-in views are filled from tiles decoded at the sample size the current zoom needs.
+public class TiledImageView extends View {
+
+  private static final int TILE_SIZE = 512;
+  private static final float MAX_SCALE = 4;
+  private static final float DOUBLE_TAP_ZOOM = 3;
+  private static final int TILE_CACHE_FRACTION = 8;
+  // Bits given to a tile's row and column in its key; more than any decodable image needs.
+  private static final int TILE_KEY_BITS = 20;
+
+  // BitmapRegionDecoder serializes decodes internally, so more threads wouldn't help.
+  private static final ExecutorService DECODER = Executors.newSingleThreadExecutor();
+
+  private final LruCache<Long, Bitmap> tiles;
+  private final Set<Long> requested = new HashSet<>();
+  private final ScaleGestureDetector scaleDetector;
+  private final GestureDetector gestureDetector;
+  private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final RectF target = new RectF();
+  private final Rect region = new Rect();
+
+  private volatile int generation;
+  private volatile int currentSample;
+  private BitmapRegionDecoder decoder;
+  private Bitmap preview;
+  private int previewSample;
+  private int imageWidth;
+  private int imageHeight;
+  private float scale;
+  private float minScale;
+  private float offsetX;
+  private float offsetY;
+  private OnErrorListener errorListener;
+
+  public TiledImageView(Context context) {
+    this(context, null);
+  }
+
+  public TiledImageView(Context context, @Nullable AttributeSet attrs) {
+    super(context, attrs);
+    int cacheSize = (int) (Runtime.getRuntime().maxMemory() / TILE_CACHE_FRACTION);
+    tiles = new LruCache<Long, Bitmap>(cacheSize) {
+      @Override
+      protected int sizeOf(Long key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+    scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+    gestureDetector = new GestureDetector(context, new GestureListener());
+  }
+
+  public void setOnErrorListener(@Nullable OnErrorListener errorListener) {
+    this.errorListener = errorListener;
+  }
+
+  // Opens the file off the UI thread; the view stays blank until the preview is ready.
+  public void setImageFile(@NonNull File file) {
+    clear();
+    int loading = generation;
+    int maxDimension = getMaxDimension();
+    DECODER.execute(() -> {
+      BitmapRegionDecoder decoder = null;
+      try {
+        decoder = BitmapRegionDecoder.newInstance(file.getPath(), false);
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+        int sample = 1;
+        while (Math.max(width, height) / sample > maxDimension) {
+          sample *= 2;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        Bitmap preview = decoder.decodeRegion(new Rect(0, 0, width, height), options);
+        if (preview == null) {
+          throw new IOException(file.getPath());
+        }
+        BitmapRegionDecoder opened = decoder;
+        int previewSample = sample;
+        post(() -> {
+          if (loading == generation) {
+            show(opened, preview, previewSample);
+          } else {
+            DECODER.execute(opened::recycle);
+          }
+        });
+      } catch (IOException | RuntimeException ex) {
+        if (decoder != null) {
+          decoder.recycle();
+        }
+        post(() -> {
+          if (loading == generation && errorListener != null) {
+            errorListener.onError(ex);
+          }
+        });
+      }
+    });
+  }
+
+  public void clear() {
+    generation++;
+    if (decoder != null) {
+      // Queued behind any decode still using it.
+      DECODER.execute(decoder::recycle);
+      decoder = null;
+    }
+    preview = null;
+    tiles.evictAll();
+    requested.clear();
+    invalidate();
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    clear();
+    super.onDetachedFromWindow();
+  }
+
+  @Override
+  protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    super.onSizeChanged(w, h, oldw, oldh);
+    fit();
+  }
+
+  @Override
+  public boolean onTouchEvent(MotionEvent event) {
+    if (preview == null) {
+      return super.onTouchEvent(event);
+    }
+    boolean handled = scaleDetector.onTouchEvent(event);
+    handled = gestureDetector.onTouchEvent(event) || handled;
+    return handled || super.onTouchEvent(event);
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    super.onDraw(canvas);
+    if (preview == null) {
+      return;
+    }
+    target.set(offsetX, offsetY, offsetX + imageWidth * scale, offsetY + imageHeight * scale);
+    canvas.drawBitmap(preview, null, target, paint);
+    int sample = 1;
+    while (scale * sample * 2 <= 1) {
+      sample *= 2;
+    }
+    currentSample = sample;
+    if (sample >= previewSample) {
+      return;
+    }
+    int span = TILE_SIZE * sample;
+    int left = (int) Math.max(0, -offsetX / scale);
+    int top = (int) Math.max(0, -offsetY / scale);
+    int right = (int) Math.min(imageWidth, (getWidth() - offsetX) / scale);
+    int bottom = (int) Math.min(imageHeight, (getHeight() - offsetY) / scale);
+    for (int row = top / span; row * span < bottom; row++) {
+      for (int column = left / span; column * span < right; column++) {
+        region.set(column * span, row * span,
+            Math.min(imageWidth, (column + 1) * span), Math.min(imageHeight, (row + 1) * span));
+        long key = ((long) sample << (2 * TILE_KEY_BITS)) | ((long) column << TILE_KEY_BITS) | row;
+        Bitmap tile = tiles.get(key);
+        if (tile != null) {
+          target.set(offsetX + region.left * scale, offsetY + region.top * scale,
+              offsetX + region.right * scale, offsetY + region.bottom * scale);
+          canvas.drawBitmap(tile, null, target, paint);
+        } else {
+          request(key, new Rect(region), sample);
+        }
+      }
+    }
+  }
+
+  private void show(BitmapRegionDecoder decoder, Bitmap preview, int previewSample) {
+    this.decoder = decoder;
+    this.preview = preview;
+    this.previewSample = previewSample;
+    imageWidth = decoder.getWidth();
+    imageHeight = decoder.getHeight();
+    fit();
+  }
+
+  private void request(long key, Rect region, int sample) {
+    if (!requested.add(key)) {
+      return;
+    }
+    int requesting = generation;
+    BitmapRegionDecoder decoder = this.decoder;
+    DECODER.execute(() -> {
+      Bitmap tile = null;
+      // Tiles for a zoom level the user has already left aren't worth decoding.
+      if (requesting == generation && sample == currentSample) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        try {
+          tile = decoder.decodeRegion(region, options);
+        } catch (RuntimeException | OutOfMemoryError ex) {
+          // Taken out of requested below all the same, so it's retried the next time it's drawn.
+        }
+      }
+      Bitmap decoded = tile;
+      post(() -> {
+        if (requesting == generation) {
+          requested.remove(key);
+          if (decoded != null) {
+            tiles.put(key, decoded);
+            invalidate();
+          }
+        }
+      });
+    });
+  }
+
+  private void fit() {
+    if (preview == null || getWidth() == 0 || getHeight() == 0) {
+      return;
+    }
+    minScale = Math.min((float) getWidth() / imageWidth, (float) getHeight() / imageHeight);
+    scale = minScale;
+    constrain();
+    invalidate();
+  }
+
+  private void zoom(float newScale, float focusX, float focusY) {
+    newScale = Math.max(minScale, Math.min(newScale, Math.max(minScale, MAX_SCALE)));
+    offsetX = focusX - (focusX - offsetX) * newScale / scale;
+    offsetY = focusY - (focusY - offsetY) * newScale / scale;
+    scale = newScale;
+    constrain();
+    invalidate();
+  }
+
+  // Centers an axis that fits on screen; otherwise keeps the image edges from leaving the view.
+  private void constrain() {
+    float width = imageWidth * scale;
+    float height = imageHeight * scale;
+    offsetX = (width <= getWidth())
+        ? (getWidth() - width) / 2
+        : Math.max(getWidth() - width, Math.min(0, offsetX));
+    offsetY = (height <= getHeight())
+        ? (getHeight() - height) / 2
+        : Math.max(getHeight() - height, Math.min(0, offsetY));
+  }
+
+  private int getMaxDimension() {
+    DisplayMetrics metrics = getResources().getDisplayMetrics();
+    return Math.max(metrics.widthPixels, metrics.heightPixels);
+  }
+
+  public interface OnErrorListener {
+
+    void onError(Exception ex);
+
+  }
+
+  private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+
+    @Override
+    public boolean onScale(ScaleGestureDetector detector) {
+      zoom(scale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+      return true;
+    }
+
+  }
+
+  private class GestureListener extends GestureDetector.SimpleOnGestureListener {
+
+    @Override
+    public boolean onDown(MotionEvent e) {
+      return true;
+    }
+
+    @Override
+    public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+      offsetX -= distanceX;
+      offsetY -= distanceY;
+      constrain();
+      invalidate();
+      return true;
+    }
+
+    @Override
+    public boolean onDoubleTap(MotionEvent e) {
+      float newScale = (scale > minScale) ? minScale : minScale * DOUBLE_TAP_ZOOM;
+      zoom(newScale, e.getX(), e.getY());
+      return true;
+    }
+
+  }
+
+}
@@ -8,38 +8,66 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.OnLifecycleEvent;
+import androidx.lifecycle.Transformations;
+import androidx.paging.PagedList;
 import edu.cnm.deepdive.nasaapod.model.entity.Apod;
-import edu.cnm.deepdive.nasaapod.model.pojo.ApodWithStats;
+import edu.cnm.deepdive.nasaapod.model.pojo.ApodSummary;
 import edu.cnm.deepdive.nasaapod.model.repository.ApodRepository;
+import edu.cnm.deepdive.nasaapod.model.repository.DownloadQueueRepository;
 import edu.cnm.deepdive.nasaapod.service.ApodService;
+import io.reactivex.Completable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Action;
 import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 // Implements indicates its a lifetime observer.
 public class MainViewModel extends AndroidViewModel implements LifecycleObserver {
 
+  private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
   private final MutableLiveData<Apod> apod;
   private final MutableLiveData<Throwable> throwable;
   private final MutableLiveData<Set<String>> permissions;
   private final CompositeDisposable pending;
   private final ApodRepository repository;
+  private final DownloadQueueRepository downloadQueue;
+  private final MutableLiveData<String> searchQuery;
+  private final Subject<String> searchInput;
+  private final Disposable searchSubscription;
+  private final LiveData<PagedList<ApodSummary>> history;
 
   public MainViewModel(@NonNull Application application) {
     super(application);
     repository = ApodRepository.getInstance();
+    downloadQueue = DownloadQueueRepository.getInstance();
     apod = new MutableLiveData<>();
     throwable = new MutableLiveData<>();
     // Knows that set of string goes in angled brackets, and hashset is string.
     permissions = new MutableLiveData<>(new HashSet<>());
     pending = new CompositeDisposable();
+    searchQuery = new MutableLiveData<>("");
+    searchInput = PublishSubject.<String>create().toSerialized();
+    // Not in pending: searching has to keep working after the activity stops and restarts.
+    searchSubscription = searchInput
+        .debounce(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)
+        .map(String::trim)
+        .distinctUntilChanged()
+        .subscribe(searchQuery::postValue);
+    history = Transformations.switchMap(searchQuery, repository::search);
     Date today = new Date();
     String formattedDate = ApodService.DATE_FORMATTER.format(today);
     try {
@@ -50,8 +78,14 @@ public class MainViewModel extends AndroidViewModel implements LifecycleObserver
     }
   }
 
-  public LiveData<List<ApodWithStats>> getAllApodSummaries() {
-    return repository.get();
+  // One list for the activity; HistoryFragment views come and go. It follows the search text.
+  public LiveData<PagedList<ApodSummary>> getAllApodSummaries() {
+    return history;
+  }
+
+  // Typing is debounced, so only the query the user pauses on is run.
+  public void search(@NonNull String text) {
+    searchInput.onNext(text);
   }
 
   public LiveData<Apod> getApod() {
@@ -97,6 +131,11 @@ public class MainViewModel extends AndroidViewModel implements LifecycleObserver
     );
   }
 
+  // Lets the repository warm the neighbouring days while this one is on screen.
+  public void prefetch(@NonNull Apod apod) {
+    repository.prefetch(apod.getDate());
+  }
+
   // Invokes consumer with new image.
   public void getImage(@NonNull Apod apod, @NonNull Consumer<String> pathConsumer) {
     // When starting new task, clear bucket so no error messages left behind.
@@ -115,6 +154,18 @@ public class MainViewModel extends AndroidViewModel implements LifecycleObserver
     );
   }
 
+  // Downsampled image for list rows, fetched at thumbnail priority.
+  public void getThumbnail(@NonNull ApodSummary apod, @NonNull Consumer<String> pathConsumer) {
+    pending.add(
+        repository.getThumbnail(apod)
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(
+                pathConsumer,
+                throwable::setValue
+            )
+    );
+  }
+
   public void downloadImage(@NonNull Apod apod, Action onSuccess) {
     throwable.setValue(null);
     pending.add(
@@ -127,11 +178,56 @@ public class MainViewModel extends AndroidViewModel implements LifecycleObserver
     );
   }
 
+  // Queues every image from startDate to endDate for saving; the consumer gets the number added.
+  public void queueDownloads(@NonNull Date startDate, @NonNull Date endDate,
+      @NonNull Consumer<Integer> onQueued) {
+    throwable.setValue(null);
+    pending.add(
+        downloadQueue.enqueue(startDate, endDate)
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(
+                onQueued,
+                throwable::setValue
+            )
+    );
+  }
+
+  public LiveData<Integer> getPendingDownloads() {
+    return downloadQueue.getPendingCount();
+  }
+
+  // Writes the network metrics report, for profiling real sessions.
+  public void exportMetrics(@NonNull File file, @NonNull Action onSuccess) {
+    throwable.setValue(null);
+    pending.add(
+        Completable.fromAction(() -> {
+          try (Writer writer = new FileWriter(file)) {
+            ApodService.getMetrics().export(writer);
+            writer.write(String.format(Locale.US, "DOWNLOAD QUEUE%n  bytes: %d%n  throughput: %d B/s%n",
+                downloadQueue.getTotalBytes(), downloadQueue.getThroughput()));
+          }
+        })
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe(
+                onSuccess,
+                throwable::setValue
+            )
+    );
+  }
+
+  @Override
+  protected void onCleared() {
+    super.onCleared();
+    searchSubscription.dispose();
+  }
+
   // If app gets stopped, this gets executed. It empties the bucket of pending tasks.
   @SuppressWarnings("unused")
   @OnLifecycleEvent(Event.ON_STOP)
   private void disposePending() {
     pending.clear();
+    repository.flushAccesses();
   }
 
 }
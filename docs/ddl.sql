@@ -19,7 +19,59 @@ CREATE TABLE IF NOT EXISTS `Access`
     `access_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
     `apod_id`   INTEGER                           NOT NULL,
     `timestamp` INTEGER                           NOT NULL,
+    `views`     INTEGER                           NOT NULL DEFAULT 1,
     FOREIGN KEY (`apod_id`) REFERENCES `Apod` (`apod_id`) ON UPDATE NO ACTION ON DELETE CASCADE
 );
 
-CREATE INDEX IF NOT EXISTS `index_Access_apod_id` ON `Access` (`apod_id`);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS `index_Access_apod_id_timestamp` ON `Access` (`apod_id`, `timestamp`);
+CREATE TABLE IF NOT EXISTS `DownloadJob`
+(
+    `download_job_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+    `date`            INTEGER                           NOT NULL,
+    `status`          INTEGER                           NOT NULL,
+    `attempts`        INTEGER                           NOT NULL,
+    `bytes`           INTEGER                           NOT NULL,
+    `created`         INTEGER                           NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS `index_DownloadJob_date` ON `DownloadJob` (`date`);
+
+CREATE INDEX IF NOT EXISTS `index_DownloadJob_status` ON `DownloadJob` (`status`);
+
+CREATE TABLE IF NOT EXISTS `AccessStats`
+(
+    `apod_id`      INTEGER NOT NULL,
+    `access_count` INTEGER NOT NULL,
+    `last_access`  INTEGER NOT NULL,
+    PRIMARY KEY (`apod_id`),
+    FOREIGN KEY (`apod_id`) REFERENCES `Apod` (`apod_id`) ON UPDATE NO ACTION ON DELETE CASCADE
+);
+
+CREATE TRIGGER IF NOT EXISTS `access_stats_insert`
+    AFTER INSERT
+    ON `Access`
+BEGIN
+    INSERT OR IGNORE INTO `AccessStats` (`apod_id`, `access_count`, `last_access`)
+    VALUES (NEW.`apod_id`, 0, NEW.`timestamp`);
+    UPDATE `AccessStats`
+    SET `access_count` = `access_count` + NEW.`views`,
+        `last_access`  = MAX(`last_access`, NEW.`timestamp`)
+    WHERE `apod_id` = NEW.`apod_id`;
+END;
+
+CREATE VIRTUAL TABLE IF NOT EXISTS `ApodFts` USING FTS4
+(
+    `title` TEXT NOT NULL,
+    `description` TEXT NOT NULL,
+    content=`Apod`
+);
+
+CREATE TABLE IF NOT EXISTS `AccessRollup`
+(
+    `apod_id`      INTEGER NOT NULL,
+    `day`          INTEGER NOT NULL,
+    `access_count` INTEGER NOT NULL,
+    `last_access`  INTEGER NOT NULL,
+    PRIMARY KEY (`apod_id`, `day`),
+    FOREIGN KEY (`apod_id`) REFERENCES `Apod` (`apod_id`) ON UPDATE NO ACTION ON DELETE CASCADE
+);